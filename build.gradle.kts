@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.9.25"
     id("org.jetbrains.intellij") version "1.17.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.dannypa"
@@ -20,16 +21,72 @@ intellij {
     plugins.set(listOf(/* Plugin Dependencies */))
 }
 
+// The Vector API kernel of ModularChains lives in src/vector/java, so that only its compilation needs the incubator
+// module (and prints javac's incubator warning). It goes into the plugin jar; ModularChains loads it by name at
+// runtime and falls back to the scalar kernel if the module is not there.
+val vector: SourceSet = sourceSets.create("vector") {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+}
+
+// Benchmarks live in src/jmh/java and run with ./gradlew jmh.
+// They need the IDE classes the plugin is compiled against, and run headless.
+configurations {
+    named("jmhImplementation") {
+        extendsFrom(compileOnly.get())
+    }
+}
+
+dependencies {
+    "jmhRuntimeOnly"(vector.output)
+    testImplementation("junit:junit:4.13.2")
+    testRuntimeOnly(vector.output)
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    profilers.set(listOf("gc"))
+    jvmArgsAppend.set(listOf("-Djava.awt.headless=true", "--add-modules=jdk.incubator.vector"))
+    resultFormat.set("JSON")
+}
+
 tasks {
     // Set the JVM compatibility versions
     withType<JavaCompile> {
         sourceCompatibility = "17"
         targetCompatibility = "17"
     }
+    named<JavaCompile>(vector.compileJavaTaskName) {
+        options.compilerArgs.add("--add-modules=jdk.incubator.vector")
+    }
+    jar {
+        from(vector.output)
+    }
     withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile> {
         kotlinOptions.jvmTarget = "17"
     }
 
+    // Replays a recorded mouse trace without a display:
+    // ./gradlew replayMouseTrace -Ptrace=<file> [-PreplayArgs="--per-event --expect-bounds x,y,w,h"]
+    register<JavaExec>("replayMouseTrace") {
+        group = "verification"
+        description = "Replays a mouse trace against MouseFollowAndResizePanel headless"
+        classpath = sourceSets["main"].output + sourceSets["main"].compileClasspath
+        mainClass.set("com.dannypa.demoplugin.MouseTraceReplayer")
+        jvmArgs("-Djava.awt.headless=true")
+        args(listOfNotNull(providers.gradleProperty("trace").orNull))
+        args(providers.gradleProperty("replayArgs").orNull?.split(" ")?.filter { it.isNotBlank() } ?: emptyList())
+    }
+
+    // ModularChainKernelsTest checks the Vector API kernel of ModularChains, so the tests run with the module
+    test {
+        jvmArgs("--add-modules=jdk.incubator.vector")
+    }
+
+    // lets the sandbox IDE use the Vector API kernel of ModularChains
+    runIde {
+        jvmArgs("--add-modules=jdk.incubator.vector")
+    }
+
     patchPluginXml {
         sinceBuild.set("232")
         untilBuild.set("242.*")
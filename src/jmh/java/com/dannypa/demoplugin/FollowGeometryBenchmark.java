@@ -0,0 +1,108 @@
+package com.dannypa.demoplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-event math of {@link MouseFollowAndResizePanel}: the scaling formula and the side and distance lookups.
+ * Every invocation takes the next point from a fixed pseudo-random sequence, so that neither the JIT nor the
+ * branch predictor sees a constant input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FollowGeometryBenchmark {
+    /**
+     * The number of precomputed points; a power of two.
+     */
+    private static final int POINT_COUNT = 1024;
+
+    /**
+     * Size of the panel.
+     */
+    private static final int PANEL_SIZE = 1000;
+
+    /**
+     * The panel under test; not shown, so its screen origin is 0, 0.
+     */
+    private MouseFollowAndResizePanel panel;
+
+    /**
+     * The x coordinates of the points.
+     */
+    private final int[] xs = new int[POINT_COUNT];
+
+    /**
+     * The y coordinates of the points.
+     */
+    private final int[] ys = new int[POINT_COUNT];
+
+    /**
+     * The index of the next point.
+     */
+    private int next;
+
+    /**
+     * Creates the panel and the points.
+     */
+    @Setup
+    public void setUp() {
+        panel = new MouseFollowAndResizePanel(new JPanel(), new Dimension(PANEL_SIZE / 2, PANEL_SIZE / 2));
+        panel.setSize(PANEL_SIZE, PANEL_SIZE);
+        Random random = new Random(42);
+        for (int i = 0; i < POINT_COUNT; i++) {
+            xs[i] = random.nextInt(PANEL_SIZE);
+            ys[i] = random.nextInt(PANEL_SIZE);
+        }
+    }
+
+    /**
+     * @return The index of the next point.
+     */
+    private int nextPoint() {
+        next = (next + 1) & (POINT_COUNT - 1);
+        return next;
+    }
+
+    /**
+     * @return The size of the component at the distance of the next point to the left side.
+     */
+    @Benchmark
+    public Dimension calculateCurrentComponentSize() {
+        return panel.calculateCurrentComponentSize(xs[nextPoint()]);
+    }
+
+    /**
+     * @return The side closest to the next point.
+     */
+    @Benchmark
+    public Side getClosestSide() {
+        int i = nextPoint();
+        return panel.getClosestSide(xs[i], ys[i]);
+    }
+
+    /**
+     * @return The distance from the next point to the top side.
+     */
+    @Benchmark
+    public int getDistanceToSide() {
+        int i = nextPoint();
+        return panel.getDistanceToSide(xs[i], ys[i], Side.TOP);
+    }
+}
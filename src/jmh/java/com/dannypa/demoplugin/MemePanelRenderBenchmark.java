@@ -0,0 +1,107 @@
+package com.dannypa.demoplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless rendering of the meme {@link ImagePanel} into a {@link BufferedImage}: at a steady size, which is served
+ * by the exact-size renders of {@link ScaledImageCache}, and while the size changes on every frame, as it does while
+ * the panel follows the mouse.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemePanelRenderBenchmark {
+    /**
+     * The width and height of the panel.
+     */
+    @Param({"125", "250", "500", "1000"})
+    public int size;
+
+    /**
+     * The panel under test.
+     */
+    private ImagePanel panel;
+
+    /**
+     * The image the panel is rendered into.
+     */
+    private BufferedImage target;
+
+    /**
+     * Whether the next resizing render uses the smaller size.
+     */
+    private boolean shrunk;
+
+    /**
+     * Decodes the meme and creates the panel and the target image.
+     *
+     * @throws IOException If the meme can't be read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        URL memeResource = getClass().getClassLoader().getResource("meme.png");
+        if (memeResource == null) {
+            throw new IOException("No such file: meme.png");
+        }
+        panel = new ImagePanel(ImageIO.read(memeResource));
+        panel.setSize(size, size);
+        target = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Renders the panel at the same size every time.
+     *
+     * @return The target image.
+     */
+    @Benchmark
+    public BufferedImage paint() {
+        render();
+        return target;
+    }
+
+    /**
+     * Renders the panel at alternating sizes, like a frame of the follow panel.
+     *
+     * @return The target image.
+     */
+    @Benchmark
+    public BufferedImage paintWhileResizing() {
+        shrunk = !shrunk;
+        int side = shrunk ? size * 3 / 4 : size;
+        panel.setSize(side, side);
+        render();
+        return target;
+    }
+
+    /**
+     * Paints the panel into the target image.
+     */
+    private void render() {
+        Graphics2D g = target.createGraphics();
+        try {
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.dannypa.demoplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many independent chains {@code value = value * multiplier % MOD} on one core: the loop of the demo task, one
+ * chain after another, against the kernels of {@link ModularChains}. All benchmarks compute the same values, which
+ * {@link #setUp()} checks; the edge cases of the kernels are covered by ModularChainKernelsTest.
+ * <p>
+ * The vector kernel is only used if the fork runs with {@code --add-modules jdk.incubator.vector}, which the build
+ * adds to the JMH arguments; otherwise {@link #kernel()} measures the scalar kernel again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModularChainBenchmark {
+    /**
+     * The modulus of the demo task.
+     */
+    private static final long MOD = 1_000_000_007;
+
+    /**
+     * The number of chains.
+     */
+    @Param({"64", "4096"})
+    public int chainCount;
+
+    /**
+     * The number of steps of every chain.
+     */
+    @Param({"16", "1000"})
+    public long steps;
+
+    /**
+     * The start values of the chains.
+     */
+    private long[] startValues;
+
+    /**
+     * The multipliers of the chains.
+     */
+    private long[] multipliers;
+
+    /**
+     * The values the benchmarks advance; reset from {@link #startValues} every time.
+     */
+    private long[] values;
+
+    /**
+     * Creates pseudo-random chains and checks that all benchmarks compute the values of the demo loop.
+     *
+     * @throws IllegalStateException If a benchmark computes different values.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        startValues = new long[chainCount];
+        multipliers = new long[chainCount];
+        for (int i = 0; i < chainCount; i++) {
+            startValues[i] = random.nextInt((int) MOD);
+            multipliers[i] = 1 + random.nextInt((int) MOD - 1);
+        }
+        values = new long[chainCount];
+
+        long[] expected = singleChainLoop().clone();
+        check("scalarKernel", expected, scalarKernel());
+        check("kernel", expected, kernel());
+        check("closedForm", expected, closedForm());
+    }
+
+    /**
+     * @param benchmark The name of the benchmark.
+     * @param expected  The values of the demo loop.
+     * @param actual    The values of the benchmark.
+     * @throws IllegalStateException If the values differ.
+     */
+    private static void check(String benchmark, long[] expected, long[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            int chain = Arrays.mismatch(expected, actual);
+            throw new IllegalStateException(benchmark + " computes " + actual[chain] + " for chain " + chain
+                    + " instead of " + expected[chain]);
+        }
+    }
+
+    /**
+     * The demo loop: every chain runs to the end before the next one starts, so every step waits for the previous
+     * one.
+     *
+     * @return The values, so that the JIT can't drop the computation.
+     */
+    @Benchmark
+    public long[] singleChainLoop() {
+        for (int i = 0; i < chainCount; i++) {
+            long value = startValues[i];
+            long multiplier = multipliers[i];
+            for (long step = 0; step < steps; step++) {
+                value = value * multiplier % MOD;
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * @return The values advanced by the scalar kernel, which steps a block of chains together.
+     */
+    @Benchmark
+    public long[] scalarKernel() {
+        System.arraycopy(startValues, 0, values, 0, chainCount);
+        ModularChains.scalarKernel().advance(values, multipliers, 0, chainCount, MOD, steps);
+        return values;
+    }
+
+    /**
+     * @return The values advanced by the fastest kernel of this JVM.
+     */
+    @Benchmark
+    public long[] kernel() {
+        System.arraycopy(startValues, 0, values, 0, chainCount);
+        ModularChains.kernel().advance(values, multipliers, 0, chainCount, MOD, steps);
+        return values;
+    }
+
+    /**
+     * @return The values computed in closed form by the fastest kernel of this JVM.
+     */
+    @Benchmark
+    public long[] closedForm() {
+        System.arraycopy(startValues, 0, values, 0, chainCount);
+        ModularChains.kernel().advanceClosedForm(values, multipliers, 0, chainCount, MOD, steps);
+        return values;
+    }
+}
@@ -0,0 +1,92 @@
+package com.dannypa.demoplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of {@link MultiTargetFollowPanel} with a growing number of targets: the per-target cost of the
+ * batched bounds computation and update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiTargetFollowBenchmark {
+    /**
+     * Size of the panel.
+     */
+    private static final int PANEL_SIZE = 1000;
+
+    /**
+     * The number of distinct mouse positions.
+     */
+    private static final int POSITIONS = 400;
+
+    /**
+     * The number of targets.
+     */
+    @Param({"1", "12", "48"})
+    public int targetCount;
+
+    /**
+     * The panel under test; not shown, so its screen origin is 0, 0.
+     */
+    private MultiTargetFollowPanel panel;
+
+    /**
+     * A motion event for every position.
+     */
+    private final MouseEvent[] moves = new MouseEvent[POSITIONS];
+
+    /**
+     * The index of the next position.
+     */
+    private int next;
+
+    /**
+     * Creates the panel with its targets, enters it from the left and creates the motion events.
+     */
+    @Setup
+    public void setUp() {
+        panel = new MultiTargetFollowPanel();
+        panel.setSize(PANEL_SIZE, PANEL_SIZE);
+        for (int i = 0; i < targetCount; i++) {
+            panel.addTarget(new JPanel(), new Dimension(100, 80), new Point(i * 7 % 200 - 100, i * 13 % 200 - 100));
+        }
+        panel.dispatchEvent(new MouseEvent(
+                panel, MouseEvent.MOUSE_ENTERED, 0, 0, 0, PANEL_SIZE / 2, 0, PANEL_SIZE / 2, 0, false, 0
+        ));
+        for (int i = 0; i < POSITIONS; i++) {
+            int x = 100 + i * 2;
+            moves[i] = new MouseEvent(
+                    panel, MouseEvent.MOUSE_MOVED, 0, 0, x, PANEL_SIZE / 2, x, PANEL_SIZE / 2, 0, false, 0
+            );
+        }
+    }
+
+    /**
+     * Records the next mouse position and applies it as one frame.
+     */
+    @Benchmark
+    public void frame() {
+        panel.dispatchEvent(moves[next]);
+        next = next + 1 == POSITIONS ? 0 : next + 1;
+        panel.applyPendingMove();
+    }
+}
@@ -0,0 +1,122 @@
+package com.dannypa.demoplugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.*;
+import java.beans.PropertyChangeEvent;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the progress path of {@link PreprocessingManager}: handling a "progress" property change,
+ * and reporting a fraction or work units from the task's inner loop.
+ * The events are created up front, so the allocation rate is the one of the handler itself. The progress of the
+ * task moves with the events, so that every event changes the value of the progress bar, as it does in a real run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProgressEventBenchmark {
+    /**
+     * The number of distinct progress values.
+     */
+    private static final int PROGRESS_VALUES = 101;
+
+    /**
+     * A task that is never run; it only owns the progress, which the benchmark sets.
+     */
+    private IdleTask task;
+
+    /**
+     * The manager under test.
+     */
+    private PreprocessingManager<Integer, Void> manager;
+
+    /**
+     * A "progress" event for every value.
+     */
+    private final PropertyChangeEvent[] events = new PropertyChangeEvent[PROGRESS_VALUES];
+
+    /**
+     * The index of the next event.
+     */
+    private int next;
+
+    /**
+     * The fraction reported next.
+     */
+    private double fraction;
+
+    /**
+     * Creates the manager and the events.
+     */
+    @Setup
+    public void setUp() {
+        task = new IdleTask();
+        Runnable nothing = () -> {
+        };
+        manager = new PreprocessingManager<>(
+                new JProgressBar(), nothing, nothing, new JLabel(), nothing, nothing, task,
+                ResultRenderer.text(), null, null, null, null
+        );
+        for (int i = 0; i < PROGRESS_VALUES; i++) {
+            events[i] = new PropertyChangeEvent(task, "progress", Math.max(0, i - 1), i);
+        }
+    }
+
+    /**
+     * Moves the progress of the task to the next value and handles its event.
+     */
+    @Benchmark
+    public void propertyChange() {
+        // no listeners are registered, so this only stores the value the handler reads
+        task.showProgress(next);
+        manager.propertyChange(events[next]);
+        next = next + 1 == PROGRESS_VALUES ? 0 : next + 1;
+    }
+
+    /**
+     * Reports the next fraction, as a task does from its inner loop.
+     */
+    @Benchmark
+    public void setFraction() {
+        fraction = fraction >= 1 ? 0 : fraction + 1e-6;
+        task.setFraction(fraction);
+    }
+
+    /**
+     * Reports a finished work unit, as a worker of a task does.
+     */
+    @Benchmark
+    public void addWorkDone() {
+        task.addWorkDone(1);
+    }
+
+    /**
+     * A task that does nothing but lets the benchmark set its progress.
+     */
+    private static final class IdleTask extends PreprocessingTask<Integer, Void> {
+        @Override
+        protected Integer doInBackground() {
+            return 0;
+        }
+
+        /**
+         * @param progress The new progress, in [0, 100].
+         */
+        void showProgress(int progress) {
+            setProgress(progress);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.dannypa.demoplugin;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes partial results of a {@link ChunkedComputation} into fixed-size slots of a {@link TaskCheckpoint}.
+ *
+ * @param <R> The type of the partial result.
+ */
+public interface CheckpointCodec<R> {
+    /**
+     * Codec for {@link Long} partial results.
+     */
+    CheckpointCodec<Long> LONG = new CheckpointCodec<>() {
+        @Override
+        public int slotSize() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, int offset, Long value) {
+            buffer.putLong(offset, value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer, int offset) {
+            return buffer.getLong(offset);
+        }
+    };
+
+    /**
+     * @return The number of bytes every partial result takes.
+     */
+    int slotSize();
+
+    /**
+     * Writes the value with absolute puts only; may be called concurrently for different slots.
+     *
+     * @param buffer The buffer to write into.
+     * @param offset The offset of the slot in the buffer.
+     * @param value  The value to write.
+     */
+    void write(ByteBuffer buffer, int offset, R value);
+
+    /**
+     * @param buffer The buffer to read from.
+     * @param offset The offset of the slot in the buffer.
+     * @return The value in the slot.
+     */
+    R read(ByteBuffer buffer, int offset);
+}
@@ -0,0 +1,73 @@
+package com.dannypa.demoplugin;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A computation over the index range [0, {@link #size()}) that can be split into independent chunks.
+ * Each chunk is computed on its own, and the partial results are combined with an associative reducer,
+ * so the chunks can run in parallel (see {@link ParallelPreprocessingTask}).
+ *
+ * @param <R> The type of the (partial) result.
+ */
+public interface ChunkedComputation<R> {
+    /**
+     * @return The number of work items in the computation.
+     */
+    long size();
+
+    /**
+     * Prepares the computation before the first chunk, e.g. creates its inputs and outputs; called by
+     * {@link ParallelPreprocessingTask} in the background, so that this work does not happen on the EDT where the
+     * task is created. {@link #size()} is read before, so it must not depend on the preparation. Does nothing by
+     * default.
+     *
+     * @throws IOException If the inputs or outputs can't be created.
+     */
+    default void prepare() throws IOException {
+    }
+
+    /**
+     * Computes the partial result of the items in [from, to). Called concurrently for different chunks.
+     *
+     * @param from The first item of the chunk, inclusive.
+     * @param to   The last item of the chunk, exclusive.
+     * @return The partial result of the chunk.
+     */
+    R computeChunk(long from, long to);
+
+    /**
+     * Combines the partial results of two adjacent ranges. Must be associative;
+     * the left range always precedes the right one, so the reducer does not have to be commutative.
+     *
+     * @param left  The partial result of the left range.
+     * @param right The partial result of the right range.
+     * @return The partial result of both ranges.
+     */
+    R combine(R left, R right);
+
+    /**
+     * @return The parameters that, together with the class of the computation, fully determine the result;
+     * null (the default) if the result must not be cached. See {@link PreprocessingTask#getCacheParameters()}.
+     */
+    default List<?> getCacheParameters() {
+        return null;
+    }
+
+    /**
+     * @return The codec that stores the partial results in a {@link TaskCheckpoint}, so that an interrupted
+     * computation can be resumed; null (the default) if it can't. Checkpoints also need
+     * {@link #getCacheParameters()} to identify the computation.
+     */
+    default CheckpointCodec<R> getCheckpointCodec() {
+        return null;
+    }
+
+    /**
+     * @return The store the chunks write their results into, which {@link ParallelPreprocessingTask} retains while
+     * a chunk is computed, so that it is not unmapped under a running chunk; null (the default) if there is none.
+     */
+    default ResultStore getResultStore() {
+        return null;
+    }
+}
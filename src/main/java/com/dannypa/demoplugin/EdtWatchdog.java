@@ -0,0 +1,380 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects the plugin's EDT handlers that run longer than a budget and writes a compact report of every such stall
+ * to a rolling log file, so that an IDE freeze can be attributed to the plugin or ruled out.
+ * <p>
+ * Handlers are wrapped as
+ * <pre>{@code
+ * long token = EdtWatchdog.getInstance().enter(HANDLER_NAME);
+ * try {
+ *     ...
+ * } finally {
+ *     EdtWatchdog.getInstance().exit(token);
+ * }
+ * }</pre>
+ * Entering and leaving a handler only writes a few volatile fields. A daemon thread checks the running handler,
+ * and once it is over budget samples the stack of the EDT every {@value #SAMPLE_INTERVAL_PROPERTY} ms until it
+ * returns. Identical samples are merged in the report; the report is written by the daemon thread, never the EDT.
+ * <p>
+ * The budget is configured with the {@value #BUDGET_PROPERTY} system property or {@link #setBudget(long)}.
+ * <p>
+ * In the IDE the watchdog is an application service, so the sampler thread is stopped when the plugin is unloaded;
+ * without an application, e.g. in benchmarks and trace replays, a process-wide instance is used instead.
+ */
+public final class EdtWatchdog implements Disposable {
+    /**
+     * System property with the budget of a handler in ms.
+     */
+    static final String BUDGET_PROPERTY = "demoplugin.watchdog.budgetMs";
+
+    /**
+     * System property with the interval between two stack samples of a stalled handler in ms.
+     */
+    static final String SAMPLE_INTERVAL_PROPERTY = "demoplugin.watchdog.sampleIntervalMs";
+
+    /**
+     * Budget used when nothing else is configured, in ms.
+     */
+    private static final long DEFAULT_BUDGET = 100;
+
+    /**
+     * Sample interval used when nothing else is configured, in ms.
+     */
+    private static final long DEFAULT_SAMPLE_INTERVAL = 20;
+
+    /**
+     * The number of top frames of a sample written to the report.
+     */
+    private static final int REPORTED_FRAMES = 12;
+
+    /**
+     * Name of the log file in the IDE log directory.
+     */
+    private static final String LOG_FILE_NAME = "demo-plugin-edt-stalls.log";
+
+    /**
+     * Size of the log file after which it is rolled over.
+     */
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+
+    /**
+     * The number of rolled over log files that are kept.
+     */
+    private static final int LOG_BACKUPS = 2;
+
+    /**
+     * Marks that no handler is running.
+     */
+    private static final long IDLE = 0;
+
+    /**
+     * Returned by {@link #enter(String)} for a handler called from another handler; such calls are not timed.
+     */
+    private static final long NESTED = -1;
+
+    /**
+     * Lazily created watchdog for when there is no application.
+     */
+    private static final class Holder {
+        private static final EdtWatchdog INSTANCE = new EdtWatchdog();
+    }
+
+    /**
+     * Budget of a handler in ns.
+     */
+    private volatile long budgetNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong(BUDGET_PROPERTY, DEFAULT_BUDGET));
+
+    /**
+     * Interval between two stack samples in ns.
+     */
+    private final long sampleIntervalNanos =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong(SAMPLE_INTERVAL_PROPERTY, DEFAULT_SAMPLE_INTERVAL));
+
+    /**
+     * The number of the running handler call, or {@link #IDLE}; written last on enter, so that the other fields
+     * are visible to the sampler once it is set.
+     */
+    private volatile long runningCall = IDLE;
+
+    /**
+     * The name of the running handler.
+     */
+    private volatile String runningHandler;
+
+    /**
+     * The start of the running handler, in {@link System#nanoTime()} units.
+     */
+    private volatile long runningSince;
+
+    /**
+     * The thread the handlers run on.
+     */
+    private volatile Thread edt;
+
+    /**
+     * The number of handler calls so far; EDT only.
+     */
+    private long callCount;
+
+    /**
+     * The nesting depth of the running handlers; EDT only.
+     */
+    private int depth;
+
+    /**
+     * Stalls that have finished and wait to be written; filled on the EDT, drained by the sampler.
+     */
+    private final Queue<Stall> finishedStalls = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The call the sampler has collected {@link #samples} for; sampler thread only.
+     */
+    private long sampledCall = IDLE;
+
+    /**
+     * The stack samples of {@link #sampledCall}; sampler thread only.
+     */
+    private final List<StackTraceElement[]> samples = new ArrayList<>();
+
+    /**
+     * The thread that checks the handlers and writes the reports; stopped by {@link #dispose()}.
+     */
+    private final Thread sampler = new Thread(this::sample, "Demo plugin EDT watchdog");
+
+    public EdtWatchdog() {
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /**
+     * @return The application-wide watchdog, or the process-wide one if there is no application.
+     */
+    static EdtWatchdog getInstance() {
+        Application application = ApplicationManager.getApplication();
+        return application != null ? application.getService(EdtWatchdog.class) : Holder.INSTANCE;
+    }
+
+    /**
+     * Sets the budget of a handler; takes effect from the next check.
+     *
+     * @param budgetMillis The budget in ms.
+     */
+    void setBudget(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Budget must be positive: " + budgetMillis);
+        }
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * @return The budget of a handler in ms.
+     */
+    long getBudget() {
+        return TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    /**
+     * Marks the start of a handler; must be called on the EDT.
+     *
+     * @param handler The name of the handler; should be a constant, so that entering does not allocate.
+     * @return The token to pass to {@link #exit(long)}.
+     */
+    long enter(String handler) {
+        if (depth++ > 0) {
+            return NESTED;
+        }
+        long now = System.nanoTime();
+        edt = Thread.currentThread();
+        runningHandler = handler;
+        runningSince = now;
+        runningCall = ++callCount;
+        return now;
+    }
+
+    /**
+     * Marks the end of a handler; must be called on the EDT, in a {@code finally} block.
+     *
+     * @param token The value returned by the matching {@link #enter(String)}.
+     */
+    void exit(long token) {
+        depth--;
+        if (token == NESTED) return;
+
+        long call = runningCall;
+        runningCall = IDLE;
+        long duration = System.nanoTime() - token;
+        if (duration > budgetNanos) {
+            finishedStalls.add(new Stall(call, runningHandler, duration));
+        }
+    }
+
+    /**
+     * The loop of the sampler thread: checks the running handler once per budget, samples the EDT every
+     * sample interval while a handler is over budget, and writes the reports of finished stalls. Returns once the
+     * thread is interrupted by {@link #dispose()}, after writing the stalls that have finished by then.
+     */
+    private void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            writeFinishedStalls();
+
+            boolean stalled = false;
+            long call = runningCall;
+            if (call != IDLE && System.nanoTime() - runningSince > budgetNanos) {
+                if (call != sampledCall) {
+                    // the previous stall was queued before this call started, so its samples can be written now
+                    writeFinishedStalls();
+                    sampledCall = call;
+                    samples.clear();
+                }
+                StackTraceElement[] stack = edt.getStackTrace();
+                // the handler may have returned while the stack was taken
+                if (runningCall == call) {
+                    samples.add(stack);
+                    stalled = true;
+                }
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(stalled ? sampleIntervalNanos : budgetNanos);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+        writeFinishedStalls();
+    }
+
+    /**
+     * Stops the sampler thread and waits until it has written the finished stalls.
+     */
+    @Override
+    public void dispose() {
+        sampler.interrupt();
+        try {
+            sampler.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the reports of the finished stalls, with the samples of the last sampled call if it is one of them.
+     */
+    private void writeFinishedStalls() {
+        Stall stall;
+        while ((stall = finishedStalls.poll()) != null) {
+            writeReport(stall, stall.call == sampledCall ? samples : List.of());
+        }
+    }
+
+    /**
+     * Appends the report of a stall to the log file, rolling it over if it is too large.
+     *
+     * @param stall   The finished stall.
+     * @param samples The stack samples taken during the stall.
+     */
+    private void writeReport(Stall stall, List<StackTraceElement[]> samples) {
+        StringBuilder report = new StringBuilder();
+        report.append(Instant.now()).append(" stall ").append(TimeUnit.NANOSECONDS.toMillis(stall.duration))
+                .append(" ms in ").append(stall.handler).append(" (").append(samples.size()).append(" samples)\n");
+
+        // merge identical samples, keeping the order in which they were first seen
+        Map<List<StackTraceElement>, Integer> counts = new LinkedHashMap<>();
+        for (StackTraceElement[] sample : samples) {
+            StackTraceElement[] top = Arrays.copyOf(sample, Math.min(sample.length, REPORTED_FRAMES));
+            counts.merge(Arrays.asList(top), 1, Integer::sum);
+        }
+        for (Map.Entry<List<StackTraceElement>, Integer> entry : counts.entrySet()) {
+            report.append("  ").append(entry.getValue()).append("x\n");
+            for (StackTraceElement frame : entry.getKey()) {
+                report.append("    at ").append(frame).append('\n');
+            }
+        }
+
+        try {
+            Path logFile = Paths.get(PathManager.getLogPath(), LOG_FILE_NAME);
+            rollOver(logFile);
+            try (Writer writer = Files.newBufferedWriter(
+                    logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            )) {
+                writer.write(report.toString());
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Can't write the stall report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves the log file to the first backup if it is too large, shifting the older backups.
+     *
+     * @param logFile The log file.
+     * @throws IOException If the files can't be moved.
+     */
+    private static void rollOver(Path logFile) throws IOException {
+        if (!Files.exists(logFile) || Files.size(logFile) < MAX_LOG_BYTES) return;
+        for (int i = LOG_BACKUPS; i > 0; i--) {
+            Path source = i == 1 ? logFile : backupOf(logFile, i - 1);
+            if (Files.exists(source)) {
+                Files.move(source, backupOf(logFile, i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * @param logFile The log file.
+     * @param index   The number of the backup, starting from 1.
+     * @return The backup file with the given number.
+     */
+    private static Path backupOf(Path logFile, int index) {
+        return logFile.resolveSibling(logFile.getFileName() + "." + index);
+    }
+
+    /**
+     * A handler call that went over budget.
+     */
+    private static final class Stall {
+        /**
+         * The number of the call.
+         */
+        private final long call;
+
+        /**
+         * The name of the handler.
+         */
+        private final String handler;
+
+        /**
+         * How long the call took, in ns.
+         */
+        private final long duration;
+
+        Stall(long call, String handler, long duration) {
+            this.call = call;
+            this.handler = handler;
+            this.duration = duration;
+        }
+    }
+}
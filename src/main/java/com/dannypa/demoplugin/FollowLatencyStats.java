@@ -0,0 +1,246 @@
+package com.dannypa.demoplugin;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how far the followed component of a {@link MouseFollowAndResizePanel} lags behind the mouse.
+ * <p>
+ * An event is timestamped when it is created ({@link java.awt.event.MouseEvent#getWhen()}, wall clock) and when
+ * it is received on the EDT ({@link System#nanoTime()}); the creation time is carried over to the monotonic clock
+ * by subtracting the time the event spent in the queue. The latency of an event is the time from its creation
+ * to the end of the paint of the panel that shows the component at the event's position, i.e. the paint into the
+ * back buffer, which Swing copies to the screen right after.
+ * <p>
+ * Only the newest event is painted; older events it superseded are counted as coalesced, and events that never
+ * reach a paint (the mouse left the panel, or the component did not change) as dropped.
+ * All the recording methods must be called on the EDT; the getters may be called from any thread, and
+ * {@link #reset()} hands the reset over to the EDT, since the histogram and the counters have a single writer.
+ */
+final class FollowLatencyStats implements FollowLatencyStatsMXBean {
+    /**
+     * Domain and type of the JMX names of the stats.
+     */
+    private static final String OBJECT_NAME_PREFIX = "com.dannypa.demoplugin:type=FollowLatency,name=panel-";
+
+    /**
+     * Numbers the registered stats, so that every panel gets its own JMX name.
+     */
+    private static final AtomicInteger panelCount = new AtomicInteger();
+
+    /**
+     * Marks the absence of a timestamp.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * The event-to-paint latencies in microseconds.
+     */
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * The number of received events.
+     */
+    private volatile long eventCount;
+
+    /**
+     * The number of events superseded before they were painted.
+     */
+    private volatile long coalescedEventCount;
+
+    /**
+     * The number of events that never reached a paint.
+     */
+    private volatile long droppedEventCount;
+
+    /**
+     * The events per second measured over the last full second.
+     */
+    private volatile double eventsPerSecond;
+
+    /**
+     * The start of the current one-second window, in {@link System#nanoTime()} units.
+     */
+    private long windowStart = System.nanoTime();
+
+    /**
+     * The number of events received in the current window.
+     */
+    private long windowEventCount;
+
+    /**
+     * The creation time of the newest event that has been received but not applied to the component yet.
+     */
+    private long receivedEventNanos = NONE;
+
+    /**
+     * The creation time of the newest event that has been applied to the component but not painted yet.
+     */
+    private long appliedEventNanos = NONE;
+
+    /**
+     * The JMX name the stats are registered under; null if they are not registered.
+     */
+    private ObjectName objectName;
+
+    /**
+     * Records that a mouse event has been received.
+     *
+     * @param when The creation time of the event, see {@link java.awt.event.MouseEvent#getWhen()}.
+     */
+    void eventReceived(long when) {
+        long now = System.nanoTime();
+        long queuedMillis = Math.max(0, System.currentTimeMillis() - when);
+        if (receivedEventNanos != NONE) {
+            coalescedEventCount++;
+        }
+        receivedEventNanos = now - TimeUnit.MILLISECONDS.toNanos(queuedMillis);
+        eventCount++;
+
+        windowEventCount++;
+        long elapsed = now - windowStart;
+        if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+            eventsPerSecond = windowEventCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            windowStart = now;
+            windowEventCount = 0;
+        }
+    }
+
+    /**
+     * Records that the newest received event has been applied to the component and is waiting for a paint.
+     */
+    void eventApplied() {
+        if (receivedEventNanos == NONE) return;
+        if (appliedEventNanos != NONE) {
+            coalescedEventCount++;
+        }
+        appliedEventNanos = receivedEventNanos;
+        receivedEventNanos = NONE;
+    }
+
+    /**
+     * Records that the newest received event did not change the component, so no paint will reflect it.
+     */
+    void eventUnchanged() {
+        if (receivedEventNanos == NONE) return;
+        droppedEventCount++;
+        receivedEventNanos = NONE;
+    }
+
+    /**
+     * Records that the events waiting to be applied or painted will never be, e.g. because the mouse left the panel.
+     */
+    void eventsDiscarded() {
+        if (receivedEventNanos != NONE) {
+            droppedEventCount++;
+            receivedEventNanos = NONE;
+        }
+        if (appliedEventNanos != NONE) {
+            droppedEventCount++;
+            appliedEventNanos = NONE;
+        }
+    }
+
+    /**
+     * Records that the panel has been painted, completing the latency of the applied event if there is one.
+     */
+    void painted() {
+        if (appliedEventNanos == NONE) return;
+        latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - appliedEventNanos));
+        appliedEventNanos = NONE;
+    }
+
+    /**
+     * Registers the stats in the platform MBean server under a new name.
+     */
+    void register() {
+        if (objectName != null) return;
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + panelCount.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            System.out.println("Can't register the latency stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the stats from the platform MBean server.
+     */
+    void unregister() {
+        if (objectName == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            System.out.println("Can't unregister the latency stats: " + e.getMessage());
+        }
+        objectName = null;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latencies.getPercentile(50);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latencies.getPercentile(99);
+    }
+
+    @Override
+    public long getLatencyMaxMicros() {
+        return latencies.getMax();
+    }
+
+    @Override
+    public long getPaintedEventCount() {
+        return latencies.getTotalCount();
+    }
+
+    @Override
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    @Override
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    @Override
+    public long getCoalescedEventCount() {
+        return coalescedEventCount;
+    }
+
+    @Override
+    public long getDroppedEventCount() {
+        return droppedEventCount;
+    }
+
+    /**
+     * Forgets all recorded values on the EDT; called on a JMX thread, so the reset takes effect shortly after.
+     */
+    @Override
+    public void reset() {
+        SwingUtilities.invokeLater(this::resetOnEdt);
+    }
+
+    /**
+     * Forgets all recorded values and starts a new rate window, so that the next rate only counts new events.
+     */
+    private void resetOnEdt() {
+        latencies.reset();
+        eventCount = 0;
+        coalescedEventCount = 0;
+        droppedEventCount = 0;
+        eventsPerSecond = 0;
+        windowStart = System.nanoTime();
+        windowEventCount = 0;
+    }
+}
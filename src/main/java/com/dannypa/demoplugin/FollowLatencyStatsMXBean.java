@@ -0,0 +1,52 @@
+package com.dannypa.demoplugin;
+
+/**
+ * JMX view of the {@link FollowLatencyStats} of a {@link MouseFollowAndResizePanel}.
+ * Registered as {@code com.dannypa.demoplugin:type=FollowLatency,name=panel-N} while the panel is shown.
+ */
+public interface FollowLatencyStatsMXBean {
+    /**
+     * @return The median event-to-paint latency in microseconds.
+     */
+    long getLatencyP50Micros();
+
+    /**
+     * @return The 99th percentile of the event-to-paint latency in microseconds.
+     */
+    long getLatencyP99Micros();
+
+    /**
+     * @return The largest event-to-paint latency in microseconds.
+     */
+    long getLatencyMaxMicros();
+
+    /**
+     * @return The number of paints that reflected a mouse event.
+     */
+    long getPaintedEventCount();
+
+    /**
+     * @return The number of received mouse motion events.
+     */
+    long getEventCount();
+
+    /**
+     * @return The number of mouse motion events received during the last full second.
+     */
+    double getEventsPerSecond();
+
+    /**
+     * @return The number of events superseded by a newer event before they were painted.
+     */
+    long getCoalescedEventCount();
+
+    /**
+     * @return The number of events that never reached a paint: the mouse left the panel, or nothing changed.
+     */
+    long getDroppedEventCount();
+
+    /**
+     * Forgets all recorded values; asynchronously, on the EDT that records them.
+     */
+    void reset();
+}
@@ -0,0 +1,80 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+
+/**
+ * Calls a callback on the EDT at a fixed frame rate.
+ * Used to coalesce bursts of input events so that at most one update is applied per frame.
+ */
+class FramePacer {
+    /**
+     * Frame rate used when nothing else is configured.
+     */
+    static final int DEFAULT_FRAME_RATE = 60;
+
+    /**
+     * Swing timer that produces the frame ticks.
+     */
+    private final Timer timer;
+
+    /**
+     * Current frame rate in frames per second.
+     */
+    private int frameRate;
+
+    /**
+     * Creates a stopped pacer.
+     *
+     * @param frameRate The number of frames per second, e.g. 60, 120 or 144.
+     * @param onFrame   The callback to run on every frame; it is always called on the EDT.
+     */
+    FramePacer(int frameRate, Runnable onFrame) {
+        timer = new Timer(0, e -> onFrame.run());
+        timer.setCoalesce(true);
+        setFrameRate(frameRate);
+    }
+
+    /**
+     * @param frameRate The new number of frames per second. Takes effect from the next tick.
+     */
+    void setFrameRate(int frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + frameRate);
+        }
+        this.frameRate = frameRate;
+        // swing timers have millisecond granularity, so 144 Hz becomes a 7 ms period
+        int period = Math.max(1, Math.round(1000f / frameRate));
+        timer.setDelay(period);
+        timer.setInitialDelay(period);
+    }
+
+    /**
+     * @return The current number of frames per second.
+     */
+    int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Starts ticking if the pacer is not running yet.
+     */
+    void start() {
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+    }
+
+    /**
+     * Stops ticking. Pending ticks are discarded.
+     */
+    void stop() {
+        timer.stop();
+    }
+
+    /**
+     * @return Whether the pacer is currently ticking.
+     */
+    boolean isRunning() {
+        return timer.isRunning();
+    }
+}
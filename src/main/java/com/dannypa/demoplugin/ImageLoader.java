@@ -0,0 +1,160 @@
+package com.dannypa.demoplugin;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes images off the EDT and keeps them in a process-wide cache.
+ * <p>
+ * Images are decoded with {@link ImageReader} source subsampling straight to the smallest size that is still at
+ * least as large as the requested maximum size, so a huge image never has to be decoded at full resolution just to
+ * be shown inside a {@link MouseFollowAndResizeFrame}. Decoded images are cached by resource and maximum size,
+ * so loading the same image again costs nothing.
+ */
+final class ImageLoader {
+    /**
+     * Image decoded from a resource together with the size of the original image.
+     */
+    static final class LoadedImage {
+        /**
+         * The decoded (possibly subsampled) image.
+         */
+        private final BufferedImage image;
+
+        /**
+         * Width and height of the image in the resource.
+         */
+        private final int originalWidth, originalHeight;
+
+        /**
+         * @param image          The decoded image.
+         * @param originalWidth  The width of the image in the resource.
+         * @param originalHeight The height of the image in the resource.
+         */
+        private LoadedImage(BufferedImage image, int originalWidth, int originalHeight) {
+            this.image = image;
+            this.originalWidth = originalWidth;
+            this.originalHeight = originalHeight;
+        }
+
+        /**
+         * @return The decoded (possibly subsampled) image.
+         */
+        BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * @return The size of the image in the resource, before subsampling.
+         */
+        Dimension getOriginalSize() {
+            return new Dimension(originalWidth, originalHeight);
+        }
+    }
+
+    /**
+     * Decoded images (or decodes in progress) keyed by {@link #cacheKey(URL, int, int)}.
+     */
+    private static final Map<String, CompletableFuture<LoadedImage>> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Threads that decode the images.
+     */
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "Demo plugin image loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImageLoader() {
+    }
+
+    /**
+     * Loads the image in the background, or returns the cached one.
+     * Failed loads are not cached, so they are retried on the next call.
+     *
+     * @param resource  The image to load.
+     * @param maxWidth  The largest width the image will be displayed at.
+     * @param maxHeight The largest height the image will be displayed at.
+     * @return The future with the loaded image; it is completed on a background thread.
+     */
+    static CompletableFuture<LoadedImage> load(URL resource, int maxWidth, int maxHeight) {
+        String key = cacheKey(resource, maxWidth, maxHeight);
+        CompletableFuture<LoadedImage> future = CACHE.computeIfAbsent(key, k -> CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return decode(resource, maxWidth, maxHeight);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                DECODER
+        ));
+        future.whenComplete((image, error) -> {
+            if (error != null) CACHE.remove(key, future);
+        });
+        return future;
+    }
+
+    /**
+     * Decodes the image, subsampling it as much as possible while keeping it at least as large as the maximum size.
+     *
+     * @param resource  The image to decode.
+     * @param maxWidth  The largest width the image will be displayed at.
+     * @param maxHeight The largest height the image will be displayed at.
+     * @return The decoded image.
+     * @throws IOException If the resource cannot be read or is not an image.
+     */
+    static LoadedImage decode(URL resource, int maxWidth, int maxHeight) throws IOException {
+        try (InputStream input = resource.openStream();
+             ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            if (stream == null) {
+                throw new IOException("Can't read " + resource);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("Not an image: " + resource);
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width / maxWidth, height / maxHeight));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return new LoadedImage(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * @param resource  The image resource.
+     * @param maxWidth  The largest width the image will be displayed at.
+     * @param maxHeight The largest height the image will be displayed at.
+     * @return The key of the image in the cache.
+     */
+    private static String cacheKey(URL resource, int maxWidth, int maxHeight) {
+        return resource.toExternalForm() + '@' + maxWidth + 'x' + maxHeight;
+    }
+}
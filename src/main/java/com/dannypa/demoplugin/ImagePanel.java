@@ -0,0 +1,87 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Panel that draws an image stretched to its whole size, or a placeholder while there is no image yet.
+ * Scaled versions of the image are cached by a {@link ScaledImageCache}, so resizing the panel on every mouse move
+ * does not filter the full-size image on every paint.
+ */
+public class ImagePanel extends JPanel {
+    /**
+     * System property with the memory budget (in bytes) of the exact-size renders.
+     */
+    static final String CACHE_BYTES_PROPERTY = "demoplugin.image.cacheBytes";
+
+    /**
+     * Text shown while there is no image yet.
+     */
+    private static final String PLACEHOLDER_TEXT = "Loading...";
+
+    /**
+     * Memory budget of the exact-size renders, in bytes.
+     */
+    private final long maxCacheBytes;
+
+    /**
+     * The cache that draws the image; null while there is no image yet.
+     */
+    private ScaledImageCache cache;
+
+    /**
+     * Creates the panel that shows a placeholder until {@link #setImage(BufferedImage)} is called.
+     * The memory budget is taken from the {@value #CACHE_BYTES_PROPERTY} system property.
+     */
+    public ImagePanel() {
+        this(null);
+    }
+
+    /**
+     * Creates the panel with the memory budget taken from the {@value #CACHE_BYTES_PROPERTY} system property.
+     *
+     * @param image The image to draw; null to show a placeholder.
+     */
+    public ImagePanel(BufferedImage image) {
+        this(image, Long.getLong(CACHE_BYTES_PROPERTY, ScaledImageCache.DEFAULT_MAX_CACHE_BYTES));
+    }
+
+    /**
+     * Creates the panel.
+     *
+     * @param image         The image to draw; null to show a placeholder.
+     * @param maxCacheBytes Memory budget of the exact-size renders, in bytes.
+     */
+    public ImagePanel(BufferedImage image, long maxCacheBytes) {
+        this.maxCacheBytes = maxCacheBytes;
+        setImage(image);
+    }
+
+    /**
+     * Replaces the image and repaints the panel.
+     *
+     * @param image The image to draw; null to show a placeholder.
+     */
+    public void setImage(BufferedImage image) {
+        cache = image == null ? null : new ScaledImageCache(image, maxCacheBytes);
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (cache != null) {
+            cache.draw((Graphics2D) g, getWidth(), getHeight(), getGraphicsConfiguration());
+            return;
+        }
+
+        FontMetrics metrics = g.getFontMetrics();
+        g.setColor(getForeground());
+        g.drawString(
+                PLACEHOLDER_TEXT,
+                (getWidth() - metrics.stringWidth(PLACEHOLDER_TEXT)) / 2,
+                (getHeight() - metrics.getHeight()) / 2 + metrics.getAscent()
+        );
+    }
+}
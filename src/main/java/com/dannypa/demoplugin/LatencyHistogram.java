@@ -0,0 +1,128 @@
+package com.dannypa.demoplugin;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in microseconds with logarithmic buckets: every power of two is split into
+ * {@link #SUB_BUCKETS} equal buckets, so a percentile is off by at most 1/{@value #SUB_BUCKETS} of its value.
+ * <p>
+ * Recording is a shift, a leading-zero count and one array increment, without allocation.
+ * There must be a single writer thread (the EDT); any thread may read, and readers see a consistent enough
+ * picture for monitoring without locking.
+ */
+final class LatencyHistogram {
+    /**
+     * The number of buckets every power of two is split into; a power of two itself.
+     */
+    private static final int SUB_BUCKETS = 8;
+
+    /**
+     * log2 of {@link #SUB_BUCKETS}.
+     */
+    private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+    /**
+     * Enough buckets for any non-negative long.
+     */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * The number of recorded values per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The total number of recorded values.
+     */
+    private volatile long totalCount;
+
+    /**
+     * The largest recorded value.
+     */
+    private volatile long max;
+
+    /**
+     * Records a value; must be called from the writer thread only.
+     *
+     * @param micros The duration in microseconds; negative values are recorded as 0.
+     */
+    void record(long micros) {
+        if (micros < 0) micros = 0;
+        int bucket = bucketOf(micros);
+        // single writer: a plain read-modify-write with an ordered store is enough
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        if (micros > max) max = micros;
+        totalCount = totalCount + 1;
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket that contains the percentile, capped by the maximum; 0 if empty.
+     */
+    long getPercentile(double percentile) {
+        long total = totalCount;
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return The largest recorded value.
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * @return The total number of recorded values.
+     */
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Forgets all recorded values. Values recorded concurrently may be lost.
+     */
+    void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        max = 0;
+        totalCount = 0;
+    }
+
+    /**
+     * @param value A non-negative value.
+     * @return The index of the bucket of the value.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return The largest value that falls into the bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,101 @@
+package com.dannypa.demoplugin;
+
+import java.util.Arrays;
+
+/**
+ * Many independent modular chains as a {@link ChunkedComputation}, so that they can be run by a
+ * {@link ParallelPreprocessingTask} and shown by {@link PreprocessingManager}: the chains are split into chunks
+ * across the cores, and every chunk is advanced by {@link ModularChains#advance}, i.e. by the vector kernel where
+ * available and in closed form for long chains.
+ * <p>
+ * The partial result of a chunk is the sum of its final values modulo the modulus. The final values themselves
+ * can be written to a {@link ResultStore.LongTable}; its store is retained while a chunk writes into it, see
+ * {@link #getResultStore()}.
+ */
+public class ModularChainComputation implements ChunkedComputation<Long> {
+    /**
+     * The start values of the chains.
+     */
+    private final long[] startValues;
+
+    /**
+     * The multipliers of the chains.
+     */
+    private final long[] multipliers;
+
+    /**
+     * The modulus of all chains.
+     */
+    private final long modulus;
+
+    /**
+     * The number of steps of every chain.
+     */
+    private final long steps;
+
+    /**
+     * Receives the final values of the chains; null if they are not kept.
+     */
+    private final ResultStore.LongTable output;
+
+    /**
+     * @param startValues The start values of the chains, in [0, modulus).
+     * @param multipliers The multipliers of the chains, in [0, modulus).
+     * @param modulus     The modulus of all chains, in [2, {@link ModularChains#MAX_MODULUS}).
+     * @param steps       The number of steps of every chain.
+     * @param output      Receives the final values of the chains; null if they are not kept.
+     */
+    public ModularChainComputation(long[] startValues, long[] multipliers, long modulus, long steps,
+                                   ResultStore.LongTable output) {
+        ModularChains.checkModulus(modulus);
+        if (startValues.length != multipliers.length) {
+            throw new IllegalArgumentException(
+                    "Every chain needs a multiplier: " + startValues.length + " != " + multipliers.length
+            );
+        }
+        if (output != null && output.length() < startValues.length) {
+            throw new IllegalArgumentException("Output table is too small: " + output.length());
+        }
+        if (steps < 0) {
+            throw new IllegalArgumentException("Steps must not be negative: " + steps);
+        }
+        this.startValues = startValues;
+        this.multipliers = multipliers;
+        this.modulus = modulus;
+        this.steps = steps;
+        this.output = output;
+    }
+
+    @Override
+    public long size() {
+        return startValues.length;
+    }
+
+    @Override
+    public Long computeChunk(long from, long to) {
+        int first = (int) from;
+        int last = (int) to;
+        long[] values = Arrays.copyOfRange(startValues, first, last);
+        long[] chunkMultipliers = Arrays.copyOfRange(multipliers, first, last);
+        ModularChains.advance(values, chunkMultipliers, 0, values.length, modulus, steps);
+
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum = (sum + values[i]) % modulus;
+            if (output != null) {
+                output.set(first + i, values[i]);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public ResultStore getResultStore() {
+        return output != null ? output.getStore() : null;
+    }
+
+    @Override
+    public Long combine(Long left, Long right) {
+        return (left + right) % modulus;
+    }
+}
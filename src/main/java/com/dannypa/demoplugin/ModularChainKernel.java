@@ -0,0 +1,42 @@
+package com.dannypa.demoplugin;
+
+/**
+ * Evaluates many independent modular chains of the shape {@code value = value * multiplier % modulus} at once, so
+ * that the chains fill the execution units of a core instead of waiting on the latency of a single chain.
+ * <p>
+ * Chain i is given by {@code values[i]} and {@code multipliers[i]}; all chains share the modulus and the number of
+ * steps. Values and multipliers must be in [0, modulus), and the modulus in [2, {@link ModularChains#MAX_MODULUS}),
+ * so that a product of two residues fits in a long. Implementations are stateless and thread-safe; the kernel for
+ * the current JVM is {@link ModularChains#kernel()}.
+ */
+public interface ModularChainKernel {
+    /**
+     * Advances the chains in [from, to) by the given number of steps, one multiplication per step.
+     *
+     * @param values      The current values of the chains; replaced with the new values.
+     * @param multipliers The multipliers of the chains.
+     * @param from        The first chain, inclusive.
+     * @param to          The last chain, exclusive.
+     * @param modulus     The modulus of all chains.
+     * @param steps       The number of steps.
+     */
+    void advance(long[] values, long[] multipliers, int from, int to, long modulus, long steps);
+
+    /**
+     * Computes the same result as {@link #advance} in O(log steps) multiplications per chain, by raising the
+     * multipliers to the power of steps by squaring.
+     *
+     * @param values      The current values of the chains; replaced with the new values.
+     * @param multipliers The multipliers of the chains.
+     * @param from        The first chain, inclusive.
+     * @param to          The last chain, exclusive.
+     * @param modulus     The modulus of all chains.
+     * @param steps       The number of steps.
+     */
+    void advanceClosedForm(long[] values, long[] multipliers, int from, int to, long modulus, long steps);
+
+    /**
+     * @return A short name of the implementation, e.g. for the logs and benchmark reports.
+     */
+    String getName();
+}
@@ -0,0 +1,123 @@
+package com.dannypa.demoplugin;
+
+/**
+ * Entry point of the modular chain kernels, see {@link ModularChainKernel}.
+ * <p>
+ * {@link #kernel()} is the Vector API kernel if the JVM runs with {@code --add-modules jdk.incubator.vector} and the
+ * CPU has vectors of longs, and the scalar kernel otherwise; the Vector API can be switched off with the
+ * {@value #VECTOR_PROPERTY} system property. {@link #advance} additionally takes the closed-form path once the chains
+ * are long enough for exponentiation by squaring to be cheaper than stepping.
+ */
+public final class ModularChains {
+    /**
+     * System property that switches the Vector API kernel off; on by default.
+     */
+    static final String VECTOR_PROPERTY = "demoplugin.kernels.vector";
+
+    /**
+     * The moduli must be below this bound, so that a product of two residues fits in a long.
+     */
+    public static final long MAX_MODULUS = 1L << 31;
+
+    /**
+     * The number of steps from which {@link #advance} uses the closed form; squaring takes up to
+     * 2 * log2(steps) multiplications, but every one of them depends on the previous one.
+     */
+    static final long CLOSED_FORM_THRESHOLD = 64;
+
+    /**
+     * Lazily selected kernels.
+     */
+    private static final class Holder {
+        private static final ModularChainKernel SCALAR = new ScalarModularChainKernel();
+        private static final ModularChainKernel KERNEL = loadKernel();
+    }
+
+    private ModularChains() {
+    }
+
+    /**
+     * @return The fastest kernel available in this JVM.
+     */
+    public static ModularChainKernel kernel() {
+        return Holder.KERNEL;
+    }
+
+    /**
+     * @return The kernel in plain Java, available everywhere.
+     */
+    public static ModularChainKernel scalarKernel() {
+        return Holder.SCALAR;
+    }
+
+    /**
+     * @return The Vector API kernel, or the scalar one if the Vector API is switched off or not available.
+     */
+    private static ModularChainKernel loadKernel() {
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true"))) {
+            return Holder.SCALAR;
+        }
+        try {
+            // loaded by name: the class can't be linked without the incubator module
+            return (ModularChainKernel) Class.forName(ModularChains.class.getPackageName() + ".VectorModularChainKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.out.println("Can't use the Vector API kernel, falling back to the scalar one: " + cause);
+            return Holder.SCALAR;
+        }
+    }
+
+    /**
+     * Advances the chains in [from, to) with {@link #kernel()}, in closed form if there are at least
+     * {@value #CLOSED_FORM_THRESHOLD} steps.
+     *
+     * @param values      The current values of the chains; replaced with the new values.
+     * @param multipliers The multipliers of the chains.
+     * @param from        The first chain, inclusive.
+     * @param to          The last chain, exclusive.
+     * @param modulus     The modulus of all chains.
+     * @param steps       The number of steps.
+     */
+    public static void advance(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        checkModulus(modulus);
+        if (steps < 0) {
+            throw new IllegalArgumentException("Steps must not be negative: " + steps);
+        }
+        if (steps >= CLOSED_FORM_THRESHOLD) {
+            kernel().advanceClosedForm(values, multipliers, from, to, modulus, steps);
+        } else {
+            kernel().advance(values, multipliers, from, to, modulus, steps);
+        }
+    }
+
+    /**
+     * Raises a residue to a power by squaring.
+     *
+     * @param base     The base, in [0, modulus).
+     * @param exponent The exponent, non-negative.
+     * @param modulus  The modulus, in [2, {@link #MAX_MODULUS}).
+     * @return {@code base ^ exponent % modulus}.
+     */
+    public static long powMod(long base, long exponent, long modulus) {
+        long result = 1;
+        for (; exponent > 0; exponent >>>= 1) {
+            if ((exponent & 1) != 0) {
+                result = result * base % modulus;
+            }
+            base = base * base % modulus;
+        }
+        return result;
+    }
+
+    /**
+     * @param modulus The modulus to check.
+     * @throws IllegalArgumentException If the modulus is not in [2, {@link #MAX_MODULUS}).
+     */
+    static void checkModulus(long modulus) {
+        if (modulus < 2 || modulus >= MAX_MODULUS) {
+            throw new IllegalArgumentException("Modulus must be in [2, 2^31): " + modulus);
+        }
+    }
+}
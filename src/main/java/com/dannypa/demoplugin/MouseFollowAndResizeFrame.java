@@ -2,23 +2,142 @@ package com.dannypa.demoplugin;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Frame that handles the MouseResize panel.
+ * A frame created by {@link MouseFollowAndResizeFramePool} is hidden on close and returned to the pool instead of
+ * being disposed; any other frame is disposed on close.
+ * Resources of the shown content, e.g. a {@link ResultStore}, are closed whenever the frame is closed or disposed.
  */
 public class MouseFollowAndResizeFrame extends JFrame {
     static final int SCREEN_WIDTH = 1000;
     static final int SCREEN_HEIGHT = 1000;
 
+    /**
+     * The panel that shows the target component.
+     */
+    private final MouseFollowAndResizePanel panel;
+
+    /**
+     * The pool the frame returns to when it is closed; null if it is disposed instead.
+     */
+    private final MouseFollowAndResizeFramePool pool;
+
+    /**
+     * Records the mouse events while the frame is open; null if recording is disabled.
+     */
+    private MouseTraceRecorder recorder;
+
+    /**
+     * Resources closed together with the frame, see {@link #addResource(AutoCloseable)}.
+     */
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    /**
+     * Creates the frame and shows it right away; the frame is disposed on close.
+     *
+     * @param targetComponent     The component that follows the mouse.
+     * @param targetComponentSize The original size of the component before any scaling.
+     */
     MouseFollowAndResizeFrame(Component targetComponent, Dimension targetComponentSize) {
-        MouseFollowAndResizePanel panel = new MouseFollowAndResizePanel(
+        this(targetComponent, targetComponentSize, null);
+        open();
+    }
+
+    /**
+     * Creates a hidden frame.
+     *
+     * @param targetComponent     The component that follows the mouse.
+     * @param targetComponentSize The original size of the component before any scaling.
+     * @param pool                The pool the frame returns to when it is closed; null to dispose it instead.
+     */
+    MouseFollowAndResizeFrame(Component targetComponent, Dimension targetComponentSize,
+                              MouseFollowAndResizeFramePool pool) {
+        panel = new MouseFollowAndResizePanel(
                 targetComponent, targetComponentSize
         );
-        this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        this.pool = pool;
+        this.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         this.setSize(SCREEN_WIDTH, SCREEN_HEIGHT);
         this.setResizable(false);
-        this.setLocationRelativeTo(null);
         this.add(panel);
+        this.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Shows the frame in the middle of the screen.
+     */
+    void open() {
+        recorder = MouseTraceRecorder.startIfEnabled(panel);
+        this.setLocationRelativeTo(null);
         this.setVisible(true);
+        this.toFront();
+    }
+
+    /**
+     * Closes the frame: hides it and returns it to its pool, or disposes it if it has none.
+     */
+    void close() {
+        if (recorder != null) {
+            recorder.stop();
+            recorder = null;
+        }
+        if (pool != null) {
+            this.setVisible(false);
+            // cancels the task of the content before its resources are closed
+            pool.release(this);
+            closeResources();
+        } else {
+            this.dispose();
+        }
+    }
+
+    /**
+     * Closes a resource of the shown content, e.g. the {@link ResultStore} of its task, when the frame is closed or
+     * disposed, even if it is kept in a pool. Must be called on the EDT.
+     *
+     * @param resource The resource to close.
+     */
+    void addResource(AutoCloseable resource) {
+        resources.add(resource);
+    }
+
+    /**
+     * Closes the resources added with {@link #addResource(AutoCloseable)}.
+     */
+    private void closeResources() {
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                System.out.println("Can't close a resource of the frame: " + e.getMessage());
+            }
+        }
+        resources.clear();
+    }
+
+    /**
+     * Disposes the frame and closes its resources.
+     */
+    @Override
+    public void dispose() {
+        super.dispose();
+        closeResources();
+    }
+
+    /**
+     * @return The panel that shows the target component.
+     */
+    MouseFollowAndResizePanel getPanel() {
+        return panel;
     }
 }
@@ -0,0 +1,119 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Application service that keeps a few hidden {@link MouseFollowAndResizeFrame}s for reuse, so that opening a frame
+ * does not pay for the native peer and the first paint every time.
+ * <p>
+ * A closed frame is hidden, loses its target component (which gets its {@code removeNotify}, so e.g. a running
+ * preprocessing task is cancelled) and goes back to the pool; frames beyond the pool size are disposed.
+ * {@link #preWarm()} creates a frame with its peer and paints it offscreen once; {@link WarmUpService} calls it
+ * once the IDE is idle after startup, so the first action opens instantly.
+ * All methods must be called on the EDT.
+ */
+public final class MouseFollowAndResizeFramePool implements Disposable {
+    /**
+     * System property with the number of hidden frames that are kept.
+     */
+    static final String POOL_SIZE_PROPERTY = "demoplugin.framePool.size";
+
+    /**
+     * The number of hidden frames that are kept when nothing else is configured.
+     */
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    /**
+     * The hidden frames, the most recently used first.
+     */
+    private final Deque<MouseFollowAndResizeFrame> idleFrames = new ArrayDeque<>();
+
+    /**
+     * The number of hidden frames that are kept.
+     */
+    private final int poolSize = Math.max(0, Integer.getInteger(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+
+    /**
+     * Whether the pool has been disposed; released frames are disposed from then on.
+     */
+    private boolean disposed;
+
+    /**
+     * @return The application-wide pool.
+     */
+    public static MouseFollowAndResizeFramePool getInstance() {
+        return ApplicationManager.getApplication().getService(MouseFollowAndResizeFramePool.class);
+    }
+
+    /**
+     * Takes a hidden frame from the pool, or creates one if the pool is empty, and sets its target.
+     * The frame is shown with {@link MouseFollowAndResizeFrame#open()}.
+     *
+     * @param targetComponent     The component that follows the mouse.
+     * @param targetComponentSize The original size of the component before any scaling.
+     * @return The hidden frame.
+     */
+    MouseFollowAndResizeFrame acquire(Component targetComponent, Dimension targetComponentSize) {
+        MouseFollowAndResizeFrame frame = idleFrames.pollFirst();
+        if (frame == null) {
+            return new MouseFollowAndResizeFrame(targetComponent, targetComponentSize, this);
+        }
+        frame.getPanel().setTarget(targetComponent, targetComponentSize);
+        return frame;
+    }
+
+    /**
+     * Takes back a closed frame: removes its target and keeps it hidden, or disposes it if the pool is full.
+     *
+     * @param frame The closed frame.
+     */
+    void release(MouseFollowAndResizeFrame frame) {
+        frame.getPanel().clearTarget();
+        if (disposed || idleFrames.size() >= poolSize) {
+            frame.dispose();
+        } else {
+            idleFrames.addFirst(frame);
+        }
+    }
+
+    /**
+     * Creates a frame with its native peer and paints it offscreen once, unless the pool already has a frame.
+     */
+    void preWarm() {
+        if (disposed || poolSize == 0 || !idleFrames.isEmpty() || GraphicsEnvironment.isHeadless()) return;
+
+        MouseFollowAndResizeFrame frame = new MouseFollowAndResizeFrame(new JPanel(), new Dimension(), this);
+        frame.getPanel().clearTarget();
+        // creates the native peer without showing the frame
+        frame.addNotify();
+        frame.validate();
+
+        JRootPane rootPane = frame.getRootPane();
+        BufferedImage image = new BufferedImage(
+                Math.max(1, rootPane.getWidth()), Math.max(1, rootPane.getHeight()), BufferedImage.TYPE_INT_RGB
+        );
+        Graphics2D g = image.createGraphics();
+        try {
+            rootPane.paint(g);
+        } finally {
+            g.dispose();
+        }
+        idleFrames.addFirst(frame);
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        for (MouseFollowAndResizeFrame frame : idleFrames) {
+            frame.dispose();
+        }
+        idleFrames.clear();
+    }
+}
@@ -4,20 +4,11 @@ import javax.swing.*;
 import javax.swing.event.MouseInputAdapter;
 import java.awt.*;
 import java.awt.event.MouseEvent;
-import java.util.Arrays;
-import java.util.Comparator;
-
-/**
- * Enum that represents the four sides that the panel has.
- */
-enum Side {
-    TOP, RIGHT, BOTTOM, LEFT
-}
 
 /**
  * The panel that records when mouse enters and the side it enters from.
  * Draws the passed component and makes it follow the mouse such that mouse is at the center of the component.
- * Resizes the component based on the mouse movement: the dimensions are updated by the formula
+ * Resizes the component based on the mouse movement: by default the dimensions are updated by the formula
  * currentD = min(originalD / b + k * distance(mouse, entranceSide), originalD)
  * where:
  * <ul>
@@ -26,6 +17,18 @@ enum Side {
  *     <li>k - a scaling factor to adjust sensitivity</li>
  *     <li>distance(mouse, entranceSide) - the distance from the mouse to the side of the panel it entered from</li>
  * </ul>
+ * Other curves can be chosen with {@link #setResizeStrategy(ResizeStrategy)} or the
+ * {@value ResizeStrategy#STRATEGY_PROPERTY} system property. Whatever the curve, it is compiled into a
+ * {@link ResizeTable} for the current sizes, so resizing on a mouse event is a single table lookup.
+ * <p>
+ * By default mouse movement is coalesced: motion events only record the latest mouse position, and a
+ * {@link FramePacer} applies one resize/move per frame. The per-event path, which resizes the component on
+ * every motion event, can be turned back on with {@link #setCoalescingEnabled(boolean)} or the
+ * {@value #COALESCE_PROPERTY} system property for comparison.
+ * <p>
+ * The lag between a mouse event and the paint that shows the component at its position is measured by
+ * {@link FollowLatencyStats}, published over JMX while the panel is shown, and can be drawn over the panel with
+ * {@link #setLatencyOverlayVisible(boolean)} or the {@value #LATENCY_OVERLAY_PROPERTY} system property.
  */
 public class MouseFollowAndResizePanel extends JPanel {
 
@@ -39,15 +42,124 @@ public class MouseFollowAndResizePanel extends JPanel {
      */
     private final double SCALING_FACTOR = 0.001;
 
+    /**
+     * System property that switches coalescing of mouse motion events on or off; on by default.
+     */
+    static final String COALESCE_PROPERTY = "demoplugin.follow.coalesce";
+
+    /**
+     * System property with the frame rate of the coalesced updates.
+     */
+    static final String FRAME_RATE_PROPERTY = "demoplugin.follow.fps";
+
+    /**
+     * System property that shows the latency overlay; off by default.
+     */
+    static final String LATENCY_OVERLAY_PROPERTY = "demoplugin.follow.latencyOverlay";
+
+    /**
+     * How often (in ms) the latency overlay is refreshed.
+     */
+    private static final int OVERLAY_REFRESH_INTERVAL = 500;
+
+    /**
+     * Font of the latency overlay.
+     */
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+    /**
+     * Size of the area the latency overlay is drawn in.
+     */
+    private static final Dimension OVERLAY_SIZE = new Dimension(360, 40);
+
+    /**
+     * Name of the mouse motion handler in the {@link EdtWatchdog} reports.
+     */
+    private static final String MOUSE_MOVED_HANDLER = "MouseFollowAndResizePanel.mouseMoved";
+
+    /**
+     * Name of the frame tick, which does the work of the coalesced motion events, in the {@link EdtWatchdog} reports.
+     */
+    private static final String FRAME_HANDLER = "MouseFollowAndResizePanel.applyPendingMove";
+
     /**
      * The side from which the mouse entered last time.
      */
     private Side entranceSide;
 
+    /**
+     * The component that follows the mouse; null if the panel has no target.
+     */
+    private Component component;
+
     /**
      * The original size of the component.
      */
-    private final Dimension originalSize;
+    private final Dimension originalSize = new Dimension();
+
+    /**
+     * The curve the component is resized by.
+     */
+    private ResizeStrategy resizeStrategy = ResizeStrategy.named(
+            System.getProperty(ResizeStrategy.STRATEGY_PROPERTY), INITIAL_SCALE, SCALING_FACTOR
+    );
+
+    /**
+     * {@link #resizeStrategy} compiled for the current sizes; null if it has to be compiled again.
+     */
+    private ResizeTable resizeTable;
+
+    /**
+     * Whether motion events are coalesced into one update per frame.
+     */
+    private boolean coalescingEnabled = Boolean.parseBoolean(System.getProperty(COALESCE_PROPERTY, "true"));
+
+    /**
+     * Applies the latest recorded mouse position once per frame when coalescing is enabled.
+     */
+    private final FramePacer framePacer;
+
+    /**
+     * Whether a mouse position has been recorded but not applied yet.
+     */
+    private boolean hasPendingMove;
+
+    /**
+     * The latest recorded mouse position, relative to the panel.
+     */
+    private int pendingX, pendingY;
+
+    /**
+     * The latest recorded mouse position, on screen.
+     */
+    private int pendingScreenX, pendingScreenY;
+
+    /**
+     * Cached screen bounds of this panel used for the side and distance computations.
+     */
+    private final PanelGeometry geometry = new PanelGeometry(this);
+
+    /**
+     * Event-to-paint latency of the followed component.
+     */
+    private final FollowLatencyStats latencyStats = new FollowLatencyStats();
+
+    /**
+     * Whether the latency overlay is drawn.
+     */
+    private boolean latencyOverlayVisible = Boolean.getBoolean(LATENCY_OVERLAY_PROPERTY);
+
+    /**
+     * Repaints the latency overlay while it is visible.
+     */
+    private final Timer overlayTimer = new Timer(
+            OVERLAY_REFRESH_INTERVAL, e -> repaint(0, 0, OVERLAY_SIZE.width, OVERLAY_SIZE.height)
+    );
+
+    /**
+     * Runs once after the next paint, see {@link #runAfterNextPaint(Runnable)}; null if there is nothing to run.
+     */
+    private Runnable afterNextPaint;
 
     /**
      * Generates a mouse input adapter that handles mouse events such as entering, exiting, and movement.
@@ -58,54 +170,201 @@ public class MouseFollowAndResizePanel extends JPanel {
      *     <li>Updates the component size and visibility.</li>
      *     <li>Centers the component on the mouse location.</li>
      * </ul>
+     * The adapter always works with the current target, see {@link #setTarget(Component, Dimension)}.
      *
-     * @param component The component to be resized and moved.
      * @return A {@link MouseInputAdapter} to handle mouse events.
      */
-    private MouseInputAdapter getMouseInputAdapter(Component component) {
+    private MouseInputAdapter getMouseInputAdapter() {
         return new MouseInputAdapter() {
             @Override
             public void mouseEntered(MouseEvent e) {
                 super.mouseEntered(e);
+                if (component == null) return;
 
-                entranceSide = getClosestSide(e.getLocationOnScreen());
+                entranceSide = getClosestSide(e.getXOnScreen(), e.getYOnScreen());
                 component.setVisible(true);
-                component.setSize(new Dimension(
-                        originalSize.width / INITIAL_SCALE,
-                        originalSize.height / INITIAL_SCALE
-                ));
+                long size = getResizeTable().get(0);
+                component.setSize(ResizeTable.width(size), ResizeTable.height(size));
+                hasPendingMove = false;
             }
 
             @Override
             public void mouseExited(MouseEvent e) {
                 super.mouseExited(e);
 
-                component.setVisible(false);
+                hasPendingMove = false;
+                latencyStats.eventsDiscarded();
+                framePacer.stop();
+                if (component != null) {
+                    component.setVisible(false);
+                }
             }
 
             @Override
             public void mouseMoved(MouseEvent e) {
                 super.mouseMoved(e);
+                if (component == null) return;
                 assert entranceSide != null;
 
-                int distanceToSide = getDistanceToSide(e.getLocationOnScreen(), entranceSide);
-                component.setSize(calculateCurrentComponentSize(distanceToSide));
-                centerComponentAtMouse(component, e.getPoint());
-                component.revalidate();
+                EdtWatchdog watchdog = EdtWatchdog.getInstance();
+                long token = watchdog.enter(MOUSE_MOVED_HANDLER);
+                try {
+                    handleMouseMoved(component, e);
+                } finally {
+                    watchdog.exit(token);
+                }
             }
         };
     }
 
+    /**
+     * Records the mouse position to be applied on the next frame, or, if coalescing is disabled,
+     * resizes the component and centers it at the mouse right away.
+     *
+     * @param component The component to be resized and moved.
+     * @param e         The mouse motion event.
+     */
+    private void handleMouseMoved(Component component, MouseEvent e) {
+        latencyStats.eventReceived(e.getWhen());
+        if (coalescingEnabled) {
+            // only remember where the mouse is; the frame tick does the actual work
+            pendingX = e.getX();
+            pendingY = e.getY();
+            pendingScreenX = e.getXOnScreen();
+            pendingScreenY = e.getYOnScreen();
+            hasPendingMove = true;
+            framePacer.start();
+            return;
+        }
+
+        int distanceToSide = getDistanceToSide(e.getXOnScreen(), e.getYOnScreen(), entranceSide);
+        long size = getResizeTable().get(distanceToSide);
+        component.setSize(ResizeTable.width(size), ResizeTable.height(size));
+        centerComponentAtMouse(component, e.getX(), e.getY());
+        component.revalidate();
+        latencyStats.eventApplied();
+    }
+
+    /**
+     * Applies the latest recorded mouse position under the {@link EdtWatchdog}.
+     *
+     * @param component The component to be resized and moved.
+     */
+    private void onFrame(Component component) {
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        long token = watchdog.enter(FRAME_HANDLER);
+        try {
+            applyPendingMove(component);
+        } finally {
+            watchdog.exit(token);
+        }
+    }
+
+    /**
+     * Applies the latest recorded mouse position to the component: resizes it, centers it at the mouse and
+     * repaints only the union of its old and new bounds. Stops the frame pacer if there is nothing to apply.
+     *
+     * @param component The component to be resized and moved.
+     */
+    private void applyPendingMove(Component component) {
+        if (!hasPendingMove) {
+            // the mouse stood still for a whole frame; no need to keep ticking
+            framePacer.stop();
+            return;
+        }
+        hasPendingMove = false;
+
+        int distanceToSide = getDistanceToSide(pendingScreenX, pendingScreenY, entranceSide);
+        long size = getResizeTable().get(distanceToSide);
+        int width = ResizeTable.width(size);
+        int height = ResizeTable.height(size);
+        int x = pendingX - width / 2;
+        int y = pendingY - height / 2;
+
+        int oldX = component.getX();
+        int oldY = component.getY();
+        int oldWidth = component.getWidth();
+        int oldHeight = component.getHeight();
+        if (oldX == x && oldY == y && oldWidth == width && oldHeight == height) {
+            latencyStats.eventUnchanged();
+            return;
+        }
+
+        component.setBounds(x, y, width, height);
+        // lay out only the component itself instead of revalidating the whole hierarchy
+        component.validate();
+
+        int left = Math.min(oldX, x);
+        int top = Math.min(oldY, y);
+        int right = Math.max(oldX + oldWidth, x + width);
+        int bottom = Math.max(oldY + oldHeight, y + height);
+        repaint(left, top, right - left, bottom - top);
+        latencyStats.eventApplied();
+    }
+
+    /**
+     * Paints the panel, completes the latency of the last applied mouse event and draws the latency overlay.
+     *
+     * @param g The graphics to paint with.
+     */
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        latencyStats.painted();
+        if (latencyOverlayVisible) {
+            paintLatencyOverlay(g);
+        }
+        if (afterNextPaint != null) {
+            Runnable action = afterNextPaint;
+            afterNextPaint = null;
+            action.run();
+        }
+    }
+
+    /**
+     * Runs an action once, right after the panel is painted the next time; replaces the previous action if it has
+     * not run yet. Must be called on the EDT.
+     *
+     * @param action The action to run.
+     */
+    void runAfterNextPaint(Runnable action) {
+        afterNextPaint = action;
+    }
+
+    /**
+     * Draws the current latency numbers in the top left corner of the panel.
+     *
+     * @param g The graphics to paint with.
+     */
+    private void paintLatencyOverlay(Graphics g) {
+        g.setColor(new Color(0, 0, 0, 160));
+        g.fillRect(0, 0, OVERLAY_SIZE.width, OVERLAY_SIZE.height);
+        g.setColor(Color.WHITE);
+        g.setFont(OVERLAY_FONT);
+        int lineHeight = g.getFontMetrics().getHeight();
+        g.drawString(String.format(
+                "latency p50 %.1f ms  p99 %.1f ms  max %.1f ms",
+                latencyStats.getLatencyP50Micros() / 1000.0,
+                latencyStats.getLatencyP99Micros() / 1000.0,
+                latencyStats.getLatencyMaxMicros() / 1000.0
+        ), 4, lineHeight);
+        g.drawString(String.format(
+                "%.0f events/s  coalesced %d  dropped %d",
+                latencyStats.getEventsPerSecond(),
+                latencyStats.getCoalescedEventCount(),
+                latencyStats.getDroppedEventCount()
+        ), 4, 2 * lineHeight);
+    }
+
     /**
      * Centers the component relative to the mouse location.
      *
-     * @param component     The component to be centered.
-     * @param mousePosition The current mouse position.
+     * @param component The component to be centered.
+     * @param mouseX    The current mouse x coordinate, relative to the panel.
+     * @param mouseY    The current mouse y coordinate, relative to the panel.
      */
-    private void centerComponentAtMouse(Component component, Point mousePosition) {
-        mousePosition.x -= component.getSize().width / 2;
-        mousePosition.y -= component.getSize().height / 2;
-        component.setLocation(mousePosition);
+    private void centerComponentAtMouse(Component component, int mouseX, int mouseY) {
+        component.setLocation(mouseX - component.getWidth() / 2, mouseY - component.getHeight() / 2);
     }
 
     /**
@@ -117,96 +376,226 @@ public class MouseFollowAndResizePanel extends JPanel {
     public MouseFollowAndResizePanel(Component component, Dimension componentSize) {
         this.setLayout(null);
         this.add(component);
-        originalSize = componentSize;
-        MouseInputAdapter handler = getMouseInputAdapter(component);
+        this.component = component;
+        originalSize.setSize(componentSize);
+        framePacer = new FramePacer(
+                Integer.getInteger(FRAME_RATE_PROPERTY, FramePacer.DEFAULT_FRAME_RATE),
+                this::applyPendingFrame
+        );
+        MouseInputAdapter handler = getMouseInputAdapter();
         this.addMouseListener(handler);
         this.addMouseMotionListener(handler);
     }
 
     /**
-     * Applies the scaling formula to a number (component dimension).
+     * Changes the original size of the component, e.g. once its real content has been loaded.
+     * Takes effect from the next mouse move.
      *
-     * @param original       Original dimension.
-     * @param distanceToSide Current distance from mouse to the side of the panel it entered from.
-     * @return The result of the scaling of the original dimension given by the formula in the class description.
+     * @param componentSize The new original size of the component before any scaling.
      */
-    private int calculateCurrentComponentDimension(int original, int distanceToSide) {
-        return Math.min(
-                original / INITIAL_SCALE + (int) ((distanceToSide * SCALING_FACTOR) * original),
-                original
-        );
+    public void setOriginalSize(Dimension componentSize) {
+        originalSize.setSize(componentSize);
+        resizeTable = null;
     }
 
     /**
-     * Applies the scaling formula to get the current component size.
+     * Replaces the component that follows the mouse, e.g. when a pooled frame is reused.
+     * The previous component is removed from the panel, so it gets its {@code removeNotify}.
      *
-     * @param distanceToSide Current distance from mouse to the side of the panel it entered from.
-     * @return The result of scaling of the component size given by the formula in the class description.
+     * @param component     The new component to be resized and moved.
+     * @param componentSize The original size of the new component before any scaling.
      */
-    private Dimension calculateCurrentComponentSize(int distanceToSide) {
-        return new Dimension(
-                calculateCurrentComponentDimension(originalSize.width, distanceToSide),
-                calculateCurrentComponentDimension(originalSize.height, distanceToSide)
-        );
+    void setTarget(Component component, Dimension componentSize) {
+        clearTarget();
+        this.component = component;
+        this.add(component);
+        setOriginalSize(componentSize);
     }
 
     /**
-     * Retrieves the coordinate of the specified side of the panel.
+     * Removes the component that follows the mouse; the panel stays empty until {@link #setTarget} is called.
+     */
+    void clearTarget() {
+        hasPendingMove = false;
+        latencyStats.eventsDiscarded();
+        framePacer.stop();
+        if (component != null) {
+            this.remove(component);
+            component = null;
+            repaint();
+        }
+    }
+
+    /**
+     * Changes the curve the component is resized by. Takes effect from the next mouse move.
      *
-     * @param side The {@link Side} for which the coordinate is required.
-     * @return The relevant coordinate of the panel's side.
-     * If the side is TOP or BOTTOM, returns its y; otherwise returns its x.
+     * @param resizeStrategy The new curve.
      */
-    private int getPanelSide(Side side) {
-        // if side in {top, bottom} returns y; otherwise returns x
-        Point panelLocation = getLocationOnScreen();
-        Dimension panelSize = getSize();
+    public void setResizeStrategy(ResizeStrategy resizeStrategy) {
+        this.resizeStrategy = resizeStrategy;
+        resizeTable = null;
+    }
 
-        if (side == Side.TOP) return panelLocation.y;
-        else if (side == Side.RIGHT) return panelLocation.x + panelSize.width;
-        else if (side == Side.BOTTOM) return panelLocation.y + panelSize.height;
-        else return panelLocation.x;
+    /**
+     * @return The curve the component is resized by.
+     */
+    public ResizeStrategy getResizeStrategy() {
+        return resizeStrategy;
     }
 
     /**
-     * @param p    The point whose coordinate is returned.
-     * @param side The side that we compute the coordinate for.
-     * @return The coordinate relevant for this side.
-     * If the side is TOP or BOTTOM, returns its y; otherwise returns its x.
+     * Returns the resize table for the current sizes, compiling it first if the strategy, the original size of the
+     * component or the size of the panel has changed. A distance never exceeds the larger side of the panel.
+     *
+     * @return The resize table.
+     */
+    private ResizeTable getResizeTable() {
+        int maxDistance = Math.max(getWidth(), getHeight());
+        ResizeTable table = resizeTable;
+        if (table == null || !table.covers(originalSize.width, originalSize.height, maxDistance)) {
+            table = resizeStrategy.compile(originalSize.width, originalSize.height, maxDistance);
+            resizeTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return A copy of the original size of the component.
+     */
+    Dimension getOriginalSize() {
+        return new Dimension(originalSize);
+    }
+
+    /**
+     * Applies the latest recorded mouse position right away instead of waiting for the next frame tick,
+     * e.g. when frames are driven by a replayed trace instead of the clock.
+     */
+    void applyPendingFrame() {
+        if (component != null) {
+            onFrame(component);
+        }
+    }
+
+    /**
+     * Switches between coalesced (one update per frame) and per-event handling of mouse movement.
+     *
+     * @param coalescingEnabled Whether motion events should be coalesced.
+     */
+    public void setCoalescingEnabled(boolean coalescingEnabled) {
+        this.coalescingEnabled = coalescingEnabled;
+        if (!coalescingEnabled) {
+            hasPendingMove = false;
+            framePacer.stop();
+        }
+    }
+
+    /**
+     * @return Whether motion events are coalesced into one update per frame.
+     */
+    public boolean isCoalescingEnabled() {
+        return coalescingEnabled;
+    }
+
+    /**
+     * Sets the frame rate of the coalesced updates, e.g. 60, 120 or 144 Hz.
+     *
+     * @param frameRate The number of updates per second.
+     */
+    public void setFrameRate(int frameRate) {
+        framePacer.setFrameRate(frameRate);
+    }
+
+    /**
+     * @return The number of coalesced updates per second.
+     */
+    public int getFrameRate() {
+        return framePacer.getFrameRate();
+    }
+
+    /**
+     * Shows or hides the latency numbers in the top left corner of the panel.
+     *
+     * @param latencyOverlayVisible Whether the latency overlay should be drawn.
      */
-    private int getRelevantCoordinate(Point p, Side side) {
-        if (side == Side.TOP || side == Side.BOTTOM) {
-            return p.y;
+    public void setLatencyOverlayVisible(boolean latencyOverlayVisible) {
+        this.latencyOverlayVisible = latencyOverlayVisible;
+        if (latencyOverlayVisible && isDisplayable()) {
+            overlayTimer.start();
         } else {
-            return p.x;
+            overlayTimer.stop();
         }
+        repaint(0, 0, OVERLAY_SIZE.width, OVERLAY_SIZE.height);
     }
 
     /**
-     * @param p The point which we compute the distance from.
-     * @return The {@link Side} closest to the specified point.
+     * @return Whether the latency overlay is drawn.
      */
-    private Side getClosestSide(Point p) {
-        // not always clear: what if it is diagonal?
-        // for now let's just return something; may be improved later
+    public boolean isLatencyOverlayVisible() {
+        return latencyOverlayVisible;
+    }
 
-        int[][] distances = new int[][]{
-                new int[]{Math.abs(getPanelSide(Side.TOP) - p.y), 0}, // top
-                new int[]{Math.abs(getPanelSide(Side.RIGHT) - p.x), 1}, // right
-                new int[]{Math.abs(getPanelSide(Side.BOTTOM) - p.y), 2}, // bottom
-                new int[]{Math.abs(getPanelSide(Side.LEFT) - p.x), 3}, // left
-        };
-        Arrays.sort(distances, Comparator.comparingInt(a -> a[0]));
+    /**
+     * @return The event-to-paint latency of the followed component.
+     */
+    FollowLatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        latencyStats.register();
+        if (latencyOverlayVisible) {
+            overlayTimer.start();
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        overlayTimer.stop();
+        framePacer.stop();
+        latencyStats.unregister();
+        super.removeNotify();
+    }
+
+    /**
+     * Applies the resize strategy to get the current component size.
+     *
+     * @param distanceToSide Current distance from mouse to the side of the panel it entered from.
+     * @return The size of the component at the distance.
+     */
+    Dimension calculateCurrentComponentSize(int distanceToSide) {
+        long size = getResizeTable().get(distanceToSide);
+        return new Dimension(ResizeTable.width(size), ResizeTable.height(size));
+    }
+
+    /**
+     * Retrieves the coordinate of the specified side of the panel.
+     *
+     * @param side The {@link Side} for which the coordinate is required.
+     * @return The relevant screen coordinate of the panel's side.
+     * If the side is TOP or BOTTOM, returns its y; otherwise returns its x.
+     */
+    int getPanelSide(Side side) {
+        return geometry.getSideCoordinate(side);
+    }
 
-        return Side.values()[distances[0][1]];
+    /**
+     * @param x The x screen coordinate of the point.
+     * @param y The y screen coordinate of the point.
+     * @return The {@link Side} closest to the specified point.
+     */
+    Side getClosestSide(int x, int y) {
+        return geometry.getClosestSide(x, y);
     }
 
     /**
-     * @param p    The point which we compute the distance from.
+     * @param x    The x screen coordinate of the point.
+     * @param y    The y screen coordinate of the point.
      * @param side The {@link Side} to calculate the distance to.
      * @return The distance from the point to the panel's side.
      */
-    private int getDistanceToSide(Point p, Side side) {
-        return Math.abs(getRelevantCoordinate(p, side) - getPanelSide(side));
+    int getDistanceToSide(int x, int y, Side side) {
+        return geometry.getDistanceToSide(x, y, side);
     }
 }
@@ -0,0 +1,339 @@
+package com.dannypa.demoplugin;
+
+import java.awt.*;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compact binary format of the mouse traces recorded by {@link MouseTraceRecorder} and replayed by
+ * {@link MouseTraceReplayer}.
+ * <p>
+ * A trace starts with a magic number (int) and a version (byte), followed by one record per event:
+ * <ul>
+ *     <li>the type of the event (byte): {@link #ENTER}, {@link #MOVE} or {@link #EXIT};</li>
+ *     <li>the time since the previous event in ms (varint);</li>
+ *     <li>the change of x and y since the previous event, relative to the panel (zigzag varints);</li>
+ *     <li>for {@link #ENTER} only: the size of the panel and the original size of the component (varints).</li>
+ * </ul>
+ * A typical move takes 4 bytes.
+ */
+final class MouseTrace {
+    /**
+     * Marks a trace file.
+     */
+    private static final int MAGIC = 0x444d5452; // "DMTR"
+
+    /**
+     * Version of the format; changes whenever the format changes.
+     */
+    private static final byte VERSION = 1;
+
+    /**
+     * Extension of the trace files.
+     */
+    static final String EXTENSION = ".mtrace";
+
+    /**
+     * The mouse entered the panel.
+     */
+    static final byte ENTER = 0;
+
+    /**
+     * The mouse moved inside the panel.
+     */
+    static final byte MOVE = 1;
+
+    /**
+     * The mouse left the panel.
+     */
+    static final byte EXIT = 2;
+
+    private MouseTrace() {
+    }
+
+    /**
+     * Writes the events of a trace. Not thread-safe.
+     */
+    static final class Writer implements Closeable {
+        /**
+         * The trace file.
+         */
+        private final DataOutputStream out;
+
+        /**
+         * The time of the previous event in ms; 0 before the first one.
+         */
+        private long previousWhen;
+
+        /**
+         * The position of the previous event.
+         */
+        private int previousX, previousY;
+
+        /**
+         * Creates the file and writes the header.
+         *
+         * @param file The trace file; replaced if it exists.
+         * @throws IOException If the file can't be written.
+         */
+        Writer(Path file) throws IOException {
+            this(Files.newOutputStream(file));
+        }
+
+        /**
+         * Writes the header to the stream.
+         *
+         * @param out The stream to write the trace to.
+         * @throws IOException If the stream can't be written.
+         */
+        Writer(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        /**
+         * @param when         The time of the event in ms.
+         * @param x            The x coordinate of the mouse, relative to the panel.
+         * @param y            The y coordinate of the mouse, relative to the panel.
+         * @param panelSize    The size of the panel.
+         * @param originalSize The original size of the component.
+         * @throws IOException If the trace can't be written.
+         */
+        void enter(long when, int x, int y, Dimension panelSize, Dimension originalSize) throws IOException {
+            write(ENTER, when, x, y);
+            writeVarint(out, panelSize.width);
+            writeVarint(out, panelSize.height);
+            writeVarint(out, originalSize.width);
+            writeVarint(out, originalSize.height);
+        }
+
+        /**
+         * @param when The time of the event in ms.
+         * @param x    The x coordinate of the mouse, relative to the panel.
+         * @param y    The y coordinate of the mouse, relative to the panel.
+         * @throws IOException If the trace can't be written.
+         */
+        void move(long when, int x, int y) throws IOException {
+            write(MOVE, when, x, y);
+        }
+
+        /**
+         * @param when The time of the event in ms.
+         * @param x    The x coordinate of the mouse, relative to the panel.
+         * @param y    The y coordinate of the mouse, relative to the panel.
+         * @throws IOException If the trace can't be written.
+         */
+        void exit(long when, int x, int y) throws IOException {
+            write(EXIT, when, x, y);
+        }
+
+        /**
+         * Writes the common part of a record.
+         */
+        private void write(byte type, long when, int x, int y) throws IOException {
+            out.writeByte(type);
+            writeVarint(out, previousWhen == 0 ? 0 : Math.max(0, when - previousWhen));
+            writeVarint(out, zigzag(x - previousX));
+            writeVarint(out, zigzag(y - previousY));
+            previousWhen = when;
+            previousX = x;
+            previousY = y;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the events of a trace one by one. Not thread-safe.
+     */
+    static final class Reader implements Closeable {
+        /**
+         * The trace file.
+         */
+        private final DataInputStream in;
+
+        /**
+         * The type of the current event.
+         */
+        private byte type;
+
+        /**
+         * The time of the current event in ms since the first event.
+         */
+        private long when;
+
+        /**
+         * The position of the current event, relative to the panel.
+         */
+        private int x, y;
+
+        /**
+         * The size of the panel at the last {@link #ENTER} event.
+         */
+        private final Dimension panelSize = new Dimension();
+
+        /**
+         * The original size of the component at the last {@link #ENTER} event.
+         */
+        private final Dimension originalSize = new Dimension();
+
+        /**
+         * Opens the file and checks the header.
+         *
+         * @param file The trace file.
+         * @throws IOException If the file can't be read or is not a trace.
+         */
+        Reader(Path file) throws IOException {
+            this(Files.newInputStream(file));
+        }
+
+        /**
+         * Checks the header of the stream.
+         *
+         * @param in The stream to read the trace from.
+         * @throws IOException If the stream can't be read or is not a trace.
+         */
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in));
+            try {
+                if (this.in.readInt() != MAGIC) {
+                    throw new IOException("Not a mouse trace");
+                }
+                byte version = this.in.readByte();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported mouse trace version: " + version);
+                }
+            } catch (IOException e) {
+                this.in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Reads the next event.
+         *
+         * @return Whether there was one.
+         * @throws IOException If the trace can't be read or is truncated in the middle of an event.
+         */
+        boolean next() throws IOException {
+            int nextType = in.read();
+            if (nextType < 0) return false;
+            if (nextType > EXIT) {
+                throw new IOException("Unknown event type: " + nextType);
+            }
+            type = (byte) nextType;
+            when += readVarint(in);
+            x += unzigzag(readVarint(in));
+            y += unzigzag(readVarint(in));
+            if (type == ENTER) {
+                panelSize.setSize(readVarint(in), readVarint(in));
+                originalSize.setSize(readVarint(in), readVarint(in));
+            }
+            return true;
+        }
+
+        /**
+         * @return The type of the current event: {@link #ENTER}, {@link #MOVE} or {@link #EXIT}.
+         */
+        byte getType() {
+            return type;
+        }
+
+        /**
+         * @return The time of the current event in ms since the first event.
+         */
+        long getWhen() {
+            return when;
+        }
+
+        /**
+         * @return The x coordinate of the mouse, relative to the panel.
+         */
+        int getX() {
+            return x;
+        }
+
+        /**
+         * @return The y coordinate of the mouse, relative to the panel.
+         */
+        int getY() {
+            return y;
+        }
+
+        /**
+         * @return The size of the panel at the last {@link #ENTER} event.
+         */
+        Dimension getPanelSize() {
+            return panelSize;
+        }
+
+        /**
+         * @return The original size of the component at the last {@link #ENTER} event.
+         */
+        Dimension getOriginalSize() {
+            return originalSize;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a non-negative number in 7-bit groups, least significant first.
+     */
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarint}.
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Mouse trace is truncated");
+            }
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in mouse trace");
+    }
+
+    /**
+     * Maps small negative and positive numbers to small non-negative ones.
+     */
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    /**
+     * Reverses {@link #zigzag(int)}.
+     */
+    private static int unzigzag(long value) {
+        int bits = (int) value;
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+}
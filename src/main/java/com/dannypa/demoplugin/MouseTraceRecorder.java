@@ -0,0 +1,134 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.event.MouseInputAdapter;
+import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Records the mouse events of a {@link MouseFollowAndResizePanel} to a {@link MouseTrace} file, so that a follow-lag
+ * report can be reproduced with {@link MouseTraceReplayer}. Enabled for every frame by pointing the
+ * {@value #TRACE_DIRECTORY_PROPERTY} system property to a directory.
+ * <p>
+ * Events are written on the EDT into a buffer; the file is complete once the recorder is {@link #stop() stopped}.
+ */
+final class MouseTraceRecorder extends MouseInputAdapter {
+    /**
+     * System property with the directory the traces are recorded to; nothing is recorded if it is not set.
+     */
+    static final String TRACE_DIRECTORY_PROPERTY = "demoplugin.follow.traceDir";
+
+    /**
+     * The recorded panel.
+     */
+    private final MouseFollowAndResizePanel panel;
+
+    /**
+     * The trace being written.
+     */
+    private final MouseTrace.Writer writer;
+
+    /**
+     * The trace file.
+     */
+    private final Path file;
+
+    private MouseTraceRecorder(MouseFollowAndResizePanel panel, MouseTrace.Writer writer, Path file) {
+        this.panel = panel;
+        this.writer = writer;
+        this.file = file;
+    }
+
+    /**
+     * Starts recording the panel to a new file in the {@value #TRACE_DIRECTORY_PROPERTY} directory.
+     *
+     * @param panel The panel to record.
+     * @return The started recorder, or null if recording is disabled or the file can't be created.
+     */
+    static MouseTraceRecorder startIfEnabled(MouseFollowAndResizePanel panel) {
+        String directory = System.getProperty(TRACE_DIRECTORY_PROPERTY);
+        if (directory == null) return null;
+        try {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            return start(panel, dir.resolve("trace-" + System.currentTimeMillis() + MouseTrace.EXTENSION));
+        } catch (IOException e) {
+            System.out.println("Can't record the mouse trace: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Starts recording the panel.
+     *
+     * @param panel The panel to record.
+     * @param file  The trace file; replaced if it exists.
+     * @return The started recorder.
+     * @throws IOException If the file can't be created.
+     */
+    static MouseTraceRecorder start(MouseFollowAndResizePanel panel, Path file) throws IOException {
+        MouseTraceRecorder recorder = new MouseTraceRecorder(panel, new MouseTrace.Writer(file), file);
+        panel.addMouseListener(recorder);
+        panel.addMouseMotionListener(recorder);
+        return recorder;
+    }
+
+    /**
+     * Stops recording and closes the file.
+     */
+    void stop() {
+        panel.removeMouseListener(this);
+        panel.removeMouseMotionListener(this);
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.out.println("Can't record the mouse trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The trace file.
+     */
+    Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void mouseEntered(MouseEvent e) {
+        try {
+            writer.enter(e.getWhen(), e.getX(), e.getY(), panel.getSize(), panel.getOriginalSize());
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        try {
+            writer.move(e.getWhen(), e.getX(), e.getY());
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    @Override
+    public void mouseExited(MouseEvent e) {
+        try {
+            writer.exit(e.getWhen(), e.getX(), e.getY());
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    /**
+     * Reports a write error and stops recording.
+     *
+     * @param e The error.
+     */
+    private void fail(IOException e) {
+        System.out.println("Can't record the mouse trace: " + e.getMessage());
+        stop();
+    }
+}
@@ -0,0 +1,324 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a {@link MouseTrace} against a {@link MouseFollowAndResizePanel} without a display, so that follow
+ * behaviour and performance can be checked in CI.
+ * <p>
+ * The panel is created at the size recorded in the trace, with a plain component of the recorded original size,
+ * and painted into an offscreen image after every update. Frames of the coalesced mode are driven by the trace's
+ * timestamps instead of the clock, so a replay is deterministic and runs as fast as the panel allows.
+ * <p>
+ * Usage: {@code MouseTraceReplayer <trace> [--per-event] [--fps N] [--expect-bounds x,y,w,h] [--max-p99-micros N]}.
+ * Prints the per-event and per-frame processing times and the final bounds of the component; exits with 1 if an
+ * expectation is not met and with 2 if the trace can't be replayed.
+ */
+public final class MouseTraceReplayer {
+    /**
+     * Exit code for an unmet expectation.
+     */
+    private static final int EXIT_FAILED_CHECK = 1;
+
+    /**
+     * Exit code for bad arguments or an unreadable trace.
+     */
+    private static final int EXIT_ERROR = 2;
+
+    /**
+     * Colour of the replayed component.
+     */
+    private static final Color COMPONENT_COLOR = new Color(0x4a90d9);
+
+    /**
+     * The trace file.
+     */
+    private final Path trace;
+
+    /**
+     * Whether motion events are applied one by one instead of once per frame.
+     */
+    private final boolean perEvent;
+
+    /**
+     * The frame rate of the coalesced mode.
+     */
+    private final int frameRate;
+
+    /**
+     * The time each event took to handle, including the paint it caused in the per-event mode, in microseconds.
+     */
+    private final LatencyHistogram eventTimes = new LatencyHistogram();
+
+    /**
+     * The time each frame took to apply and paint, in microseconds.
+     */
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+
+    /**
+     * The panel under test; created on the first {@link MouseTrace#ENTER} event.
+     */
+    private MouseFollowAndResizePanel panel;
+
+    /**
+     * The component that follows the mouse.
+     */
+    private JComponent component;
+
+    /**
+     * The offscreen paint target.
+     */
+    private BufferedImage target;
+
+    /**
+     * @param trace     The trace file.
+     * @param perEvent  Whether motion events are applied one by one instead of once per frame.
+     * @param frameRate The frame rate of the coalesced mode.
+     */
+    MouseTraceReplayer(Path trace, boolean perEvent, int frameRate) {
+        this.trace = trace;
+        this.perEvent = perEvent;
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Replays the trace; must be called on the EDT.
+     *
+     * @return The final bounds of the component, or null if the trace has no events.
+     * @throws IOException If the trace can't be read.
+     */
+    Rectangle replay() throws IOException {
+        double framePeriod = 1000.0 / frameRate;
+        double nextFrameAt = 0;
+        try (MouseTrace.Reader reader = new MouseTrace.Reader(trace)) {
+            while (reader.next()) {
+                if (reader.getType() == MouseTrace.ENTER) {
+                    setUp(reader.getPanelSize(), reader.getOriginalSize());
+                }
+                if (panel == null) {
+                    throw new IOException("Mouse trace does not start with an enter event");
+                }
+
+                long when = reader.getWhen();
+                if (!perEvent) {
+                    if (when - nextFrameAt > 2 * framePeriod) {
+                        // the mouse stood still; the pacer would have stopped, so skip the idle frames
+                        nextFrameAt = when;
+                    }
+                    while (nextFrameAt <= when) {
+                        replayFrame();
+                        nextFrameAt += framePeriod;
+                    }
+                }
+                replayEvent(reader.getType(), reader.getX(), reader.getY());
+            }
+        }
+        if (panel == null) return null;
+        if (!perEvent) {
+            replayFrame();
+        }
+        // stops the frame pacer
+        panel.setCoalescingEnabled(false);
+        return component.isVisible() ? component.getBounds() : new Rectangle();
+    }
+
+    /**
+     * Creates the panel, or adjusts it to the sizes of a new enter event.
+     *
+     * @param panelSize    The size of the panel.
+     * @param originalSize The original size of the component.
+     */
+    private void setUp(Dimension panelSize, Dimension originalSize) {
+        if (panel == null) {
+            component = new JPanel();
+            component.setBackground(COMPONENT_COLOR);
+            panel = new MouseFollowAndResizePanel(component, originalSize);
+            panel.setCoalescingEnabled(!perEvent);
+            panel.setFrameRate(frameRate);
+        } else {
+            panel.setOriginalSize(originalSize);
+        }
+        panel.setSize(panelSize);
+        if (target == null || target.getWidth() != panelSize.width || target.getHeight() != panelSize.height) {
+            target = new BufferedImage(
+                    Math.max(1, panelSize.width), Math.max(1, panelSize.height), BufferedImage.TYPE_INT_RGB
+            );
+            paint(new Rectangle(panelSize));
+        }
+    }
+
+    /**
+     * Dispatches one event to the panel and measures how long it takes to handle.
+     *
+     * @param type The type of the event.
+     * @param x    The x coordinate of the mouse, relative to the panel.
+     * @param y    The y coordinate of the mouse, relative to the panel.
+     */
+    private void replayEvent(byte type, int x, int y) {
+        int id = type == MouseTrace.ENTER ? MouseEvent.MOUSE_ENTERED
+                : type == MouseTrace.EXIT ? MouseEvent.MOUSE_EXITED
+                : MouseEvent.MOUSE_MOVED;
+        // a hidden panel is at 0, 0 on screen, so screen and panel coordinates are the same
+        MouseEvent event = new MouseEvent(
+                panel, id, System.currentTimeMillis(), 0, x, y, x, y, 0, false, MouseEvent.NOBUTTON
+        );
+
+        long start = System.nanoTime();
+        Rectangle before = component.getBounds();
+        panel.dispatchEvent(event);
+        if (perEvent || type != MouseTrace.MOVE) {
+            paintChange(before);
+        }
+        eventTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    /**
+     * Applies the pending mouse position as the frame pacer would, and measures how long it takes.
+     */
+    private void replayFrame() {
+        long start = System.nanoTime();
+        Rectangle before = component.getBounds();
+        panel.applyPendingFrame();
+        paintChange(before);
+        frameTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    /**
+     * Paints the area the component covered before and covers now, like the repaint of a real update.
+     *
+     * @param before The bounds of the component before the update.
+     */
+    private void paintChange(Rectangle before) {
+        Rectangle after = component.getBounds();
+        if (after.equals(before)) return;
+        paint(before.union(after));
+    }
+
+    /**
+     * Paints an area of the panel into the offscreen target.
+     *
+     * @param area The area to paint.
+     */
+    private void paint(Rectangle area) {
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setClip(area);
+            panel.paint(g);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Prints the results of the replay.
+     *
+     * @param bounds The final bounds of the component.
+     */
+    private void printReport(Rectangle bounds) {
+        FollowLatencyStats stats = panel == null ? new FollowLatencyStats() : panel.getLatencyStats();
+        System.out.println("trace=" + trace);
+        System.out.println("mode=" + (perEvent ? "per-event" : "coalesced@" + frameRate + "fps"));
+        printTimes("event", eventTimes);
+        printTimes("frame", frameTimes);
+        System.out.println("coalesced=" + stats.getCoalescedEventCount() + " dropped=" + stats.getDroppedEventCount());
+        System.out.println("finalBounds=" + bounds.x + "," + bounds.y + "," + bounds.width + "," + bounds.height);
+    }
+
+    /**
+     * Prints the summary of a histogram of processing times.
+     *
+     * @param name  The name of the measured step.
+     * @param times The processing times in microseconds.
+     */
+    private static void printTimes(String name, LatencyHistogram times) {
+        System.out.println(name + "s=" + times.getTotalCount()
+                + " " + name + ".p50Micros=" + times.getPercentile(50)
+                + " " + name + ".p99Micros=" + times.getPercentile(99)
+                + " " + name + ".maxMicros=" + times.getMax());
+    }
+
+    /**
+     * Replays a trace headless and checks the expectations given on the command line.
+     *
+     * @param args The trace file and the options, see the class description.
+     */
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        Path trace = null;
+        boolean perEvent = false;
+        int frameRate = FramePacer.DEFAULT_FRAME_RATE;
+        Rectangle expectedBounds = null;
+        long maxP99 = -1;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--per-event" -> perEvent = true;
+                    case "--fps" -> frameRate = Integer.parseInt(args[++i]);
+                    case "--expect-bounds" -> {
+                        String[] parts = args[++i].split(",");
+                        expectedBounds = new Rectangle(
+                                Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                                Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim())
+                        );
+                    }
+                    case "--max-p99-micros" -> maxP99 = Long.parseLong(args[++i]);
+                    default -> trace = Paths.get(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            trace = null;
+        }
+        if (trace == null || frameRate <= 0) {
+            System.out.println("Usage: MouseTraceReplayer <trace> [--per-event] [--fps N] "
+                    + "[--expect-bounds x,y,w,h] [--max-p99-micros N]");
+            System.exit(EXIT_ERROR);
+        }
+
+        MouseTraceReplayer replayer = new MouseTraceReplayer(trace, perEvent, frameRate);
+        Rectangle[] bounds = new Rectangle[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try {
+                    bounds[0] = replayer.replay();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            });
+        } catch (InvocationTargetException e) {
+            System.out.println("Can't replay the mouse trace: " + e.getCause().getMessage());
+            System.exit(EXIT_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(EXIT_ERROR);
+        }
+        if (bounds[0] == null) {
+            System.out.println("Can't replay the mouse trace: it has no events");
+            System.exit(EXIT_ERROR);
+        }
+        replayer.printReport(bounds[0]);
+
+        boolean failed = false;
+        if (expectedBounds != null && !expectedBounds.equals(bounds[0])) {
+            System.out.println("FAILED: expected bounds " + expectedBounds.x + "," + expectedBounds.y + ","
+                    + expectedBounds.width + "," + expectedBounds.height);
+            failed = true;
+        }
+        long p99 = Math.max(replayer.eventTimes.getPercentile(99), replayer.frameTimes.getPercentile(99));
+        if (maxP99 >= 0 && p99 > maxP99) {
+            System.out.println("FAILED: p99 processing time " + p99 + " us is over " + maxP99 + " us");
+            failed = true;
+        }
+        System.exit(failed ? EXIT_FAILED_CHECK : 0);
+    }
+}
@@ -0,0 +1,351 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import javax.swing.event.MouseInputAdapter;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+/**
+ * A version of {@link MouseFollowAndResizePanel} for several components that follow the mouse together.
+ * Every target has its own anchor offset (where its center is relative to the mouse) and its own scaling
+ * parameters b and k of the formula
+ * currentD = min(originalD / b + k * distance(mouse, entranceSide), originalD).
+ * <p>
+ * Mouse movement is always coalesced: motion events only record the latest mouse position, and once per frame
+ * the new bounds of all targets are computed in a single pass over primitive arrays, applied in one batch and
+ * repainted as one union rectangle, so the cost of a frame grows only with the arithmetic per target.
+ * Targets must be added on the EDT.
+ */
+public class MultiTargetFollowPanel extends JPanel {
+    /**
+     * Scaling factor b used when a target does not specify one; the same as in {@link MouseFollowAndResizePanel}.
+     */
+    static final int DEFAULT_INITIAL_SCALE = 2;
+
+    /**
+     * Scaling factor k used when a target does not specify one; the same as in {@link MouseFollowAndResizePanel}.
+     */
+    static final double DEFAULT_SCALING_FACTOR = 0.001;
+
+    /**
+     * The initial capacity of the target arrays.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Name of the mouse motion handler in the {@link EdtWatchdog} reports.
+     */
+    private static final String MOUSE_MOVED_HANDLER = "MultiTargetFollowPanel.mouseMoved";
+
+    /**
+     * Name of the frame tick in the {@link EdtWatchdog} reports.
+     */
+    private static final String FRAME_HANDLER = "MultiTargetFollowPanel.applyPendingMove";
+
+    /**
+     * The number of targets.
+     */
+    private int targetCount;
+
+    /**
+     * The targets.
+     */
+    private Component[] targets = new Component[INITIAL_CAPACITY];
+
+    /**
+     * The original width and height of every target.
+     */
+    private int[] originalWidths = new int[INITIAL_CAPACITY], originalHeights = new int[INITIAL_CAPACITY];
+
+    /**
+     * The offset of the center of every target from the mouse.
+     */
+    private int[] anchorXs = new int[INITIAL_CAPACITY], anchorYs = new int[INITIAL_CAPACITY];
+
+    /**
+     * Scaling factor b of every target.
+     */
+    private int[] initialScales = new int[INITIAL_CAPACITY];
+
+    /**
+     * Scaling factor k of every target.
+     */
+    private double[] scalingFactors = new double[INITIAL_CAPACITY];
+
+    /**
+     * The bounds every target has been given last.
+     */
+    private int[] xs = new int[INITIAL_CAPACITY], ys = new int[INITIAL_CAPACITY],
+            widths = new int[INITIAL_CAPACITY], heights = new int[INITIAL_CAPACITY];
+
+    /**
+     * The side from which the mouse entered last time.
+     */
+    private Side entranceSide;
+
+    /**
+     * Whether a mouse position has been recorded but not applied yet.
+     */
+    private boolean hasPendingMove;
+
+    /**
+     * The latest recorded mouse position, relative to the panel.
+     */
+    private int pendingX, pendingY;
+
+    /**
+     * The latest recorded mouse position, on screen.
+     */
+    private int pendingScreenX, pendingScreenY;
+
+    /**
+     * Applies the latest recorded mouse position once per frame.
+     */
+    private final FramePacer framePacer;
+
+    /**
+     * Cached screen bounds of this panel used for the side and distance computations.
+     */
+    private final PanelGeometry geometry = new PanelGeometry(this);
+
+    /**
+     * Constructs an empty panel; targets are added with {@link #addTarget}.
+     */
+    public MultiTargetFollowPanel() {
+        this.setLayout(null);
+        framePacer = new FramePacer(
+                Integer.getInteger(MouseFollowAndResizePanel.FRAME_RATE_PROPERTY, FramePacer.DEFAULT_FRAME_RATE),
+                this::onFrame
+        );
+        MouseInputAdapter handler = getMouseInputAdapter();
+        this.addMouseListener(handler);
+        this.addMouseMotionListener(handler);
+    }
+
+    /**
+     * Adds a target with the default scaling parameters.
+     *
+     * @param target       The component to be resized and moved.
+     * @param originalSize The original size of the component before any scaling.
+     * @param anchorOffset The offset of the center of the component from the mouse.
+     * @return The index of the target.
+     */
+    public int addTarget(Component target, Dimension originalSize, Point anchorOffset) {
+        return addTarget(target, originalSize, anchorOffset, DEFAULT_INITIAL_SCALE, DEFAULT_SCALING_FACTOR);
+    }
+
+    /**
+     * Adds a target.
+     *
+     * @param target        The component to be resized and moved.
+     * @param originalSize  The original size of the component before any scaling.
+     * @param anchorOffset  The offset of the center of the component from the mouse.
+     * @param initialScale  Scaling factor b: the component starts at 1/b of its original size.
+     * @param scalingFactor Scaling factor k: how fast the component grows with the distance.
+     * @return The index of the target.
+     */
+    public int addTarget(Component target, Dimension originalSize, Point anchorOffset,
+                         int initialScale, double scalingFactor) {
+        if (initialScale <= 0) {
+            throw new IllegalArgumentException("Initial scale must be positive: " + initialScale);
+        }
+        if (targetCount == targets.length) {
+            grow();
+        }
+        int i = targetCount++;
+        targets[i] = target;
+        originalWidths[i] = originalSize.width;
+        originalHeights[i] = originalSize.height;
+        anchorXs[i] = anchorOffset.x;
+        anchorYs[i] = anchorOffset.y;
+        initialScales[i] = initialScale;
+        scalingFactors[i] = scalingFactor;
+        target.setVisible(false);
+        this.add(target);
+        return i;
+    }
+
+    /**
+     * @return The number of targets.
+     */
+    public int getTargetCount() {
+        return targetCount;
+    }
+
+    /**
+     * Sets the frame rate of the updates, e.g. 60, 120 or 144 Hz.
+     *
+     * @param frameRate The number of updates per second.
+     */
+    public void setFrameRate(int frameRate) {
+        framePacer.setFrameRate(frameRate);
+    }
+
+    /**
+     * @return The number of updates per second.
+     */
+    public int getFrameRate() {
+        return framePacer.getFrameRate();
+    }
+
+    /**
+     * Doubles the capacity of the target arrays.
+     */
+    private void grow() {
+        int capacity = targets.length * 2;
+        targets = Arrays.copyOf(targets, capacity);
+        originalWidths = Arrays.copyOf(originalWidths, capacity);
+        originalHeights = Arrays.copyOf(originalHeights, capacity);
+        anchorXs = Arrays.copyOf(anchorXs, capacity);
+        anchorYs = Arrays.copyOf(anchorYs, capacity);
+        initialScales = Arrays.copyOf(initialScales, capacity);
+        scalingFactors = Arrays.copyOf(scalingFactors, capacity);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        widths = Arrays.copyOf(widths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+    }
+
+    /**
+     * Generates a mouse input adapter that tracks the entrance side, shows and hides the targets, and records the
+     * mouse position for the next frame.
+     *
+     * @return A {@link MouseInputAdapter} to handle mouse events.
+     */
+    private MouseInputAdapter getMouseInputAdapter() {
+        return new MouseInputAdapter() {
+            @Override
+            public void mouseEntered(MouseEvent e) {
+                super.mouseEntered(e);
+
+                entranceSide = geometry.getClosestSide(e.getXOnScreen(), e.getYOnScreen());
+                hasPendingMove = false;
+                for (int i = 0; i < targetCount; i++) {
+                    Component target = targets[i];
+                    xs[i] = target.getX();
+                    ys[i] = target.getY();
+                    widths[i] = target.getWidth();
+                    heights[i] = target.getHeight();
+                    target.setVisible(true);
+                }
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                super.mouseExited(e);
+
+                hasPendingMove = false;
+                framePacer.stop();
+                for (int i = 0; i < targetCount; i++) {
+                    targets[i].setVisible(false);
+                }
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                super.mouseMoved(e);
+                assert entranceSide != null;
+
+                EdtWatchdog watchdog = EdtWatchdog.getInstance();
+                long token = watchdog.enter(MOUSE_MOVED_HANDLER);
+                try {
+                    pendingX = e.getX();
+                    pendingY = e.getY();
+                    pendingScreenX = e.getXOnScreen();
+                    pendingScreenY = e.getYOnScreen();
+                    hasPendingMove = true;
+                    framePacer.start();
+                } finally {
+                    watchdog.exit(token);
+                }
+            }
+        };
+    }
+
+    /**
+     * Applies the latest recorded mouse position under the {@link EdtWatchdog}.
+     */
+    private void onFrame() {
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        long token = watchdog.enter(FRAME_HANDLER);
+        try {
+            applyPendingMove();
+        } finally {
+            watchdog.exit(token);
+        }
+    }
+
+    /**
+     * Applies the latest recorded mouse position to all targets: computes their new bounds in one pass, applies
+     * the changed ones and repaints the union of the old and new bounds once.
+     * Stops the frame pacer if there is nothing to apply.
+     */
+    void applyPendingMove() {
+        if (!hasPendingMove) {
+            // the mouse stood still for a whole frame; no need to keep ticking
+            framePacer.stop();
+            return;
+        }
+        hasPendingMove = false;
+
+        int distanceToSide = geometry.getDistanceToSide(pendingScreenX, pendingScreenY, entranceSide);
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < targetCount; i++) {
+            int width = scale(originalWidths[i], initialScales[i], scalingFactors[i], distanceToSide);
+            int height = scale(originalHeights[i], initialScales[i], scalingFactors[i], distanceToSide);
+            int x = pendingX + anchorXs[i] - width / 2;
+            int y = pendingY + anchorYs[i] - height / 2;
+            int oldX = xs[i];
+            int oldY = ys[i];
+            int oldWidth = widths[i];
+            int oldHeight = heights[i];
+            if (x == oldX && y == oldY && width == oldWidth && height == oldHeight) {
+                continue;
+            }
+
+            left = Math.min(left, Math.min(oldX, x));
+            top = Math.min(top, Math.min(oldY, y));
+            right = Math.max(right, Math.max(oldX + oldWidth, x + width));
+            bottom = Math.max(bottom, Math.max(oldY + oldHeight, y + height));
+            xs[i] = x;
+            ys[i] = y;
+            boolean resized = width != oldWidth || height != oldHeight;
+            widths[i] = width;
+            heights[i] = height;
+
+            targets[i].setBounds(x, y, width, height);
+            if (resized) {
+                // lay out only the target itself instead of revalidating the whole hierarchy
+                targets[i].validate();
+            }
+        }
+
+        if (left <= right) {
+            repaint(left, top, right - left, bottom - top);
+        }
+    }
+
+    /**
+     * Applies the scaling formula of the class description to a dimension.
+     *
+     * @param original       Original dimension.
+     * @param initialScale   Scaling factor b.
+     * @param scalingFactor  Scaling factor k.
+     * @param distanceToSide Current distance from mouse to the side of the panel it entered from.
+     * @return The scaled dimension.
+     */
+    private static int scale(int original, int initialScale, double scalingFactor, int distanceToSide) {
+        return Math.min(original / initialScale + (int) ((distanceToSide * scalingFactor) * original), original);
+    }
+
+    @Override
+    public void removeNotify() {
+        hasPendingMove = false;
+        framePacer.stop();
+        super.removeNotify();
+    }
+}
@@ -0,0 +1,171 @@
+package com.dannypa.demoplugin;
+
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.HierarchyBoundsAdapter;
+import java.awt.event.HierarchyEvent;
+
+/**
+ * Caches the screen bounds of a component and answers side/distance queries against them without allocating.
+ * <p>
+ * {@link Component#getLocationOnScreen()} takes the AWT tree lock and allocates a {@link Point} on every call,
+ * so the bounds are only looked up again after the component itself or one of its ancestors was moved, resized
+ * or shown. Meant to be used from the EDT only.
+ */
+class PanelGeometry {
+    /**
+     * The component whose bounds are cached.
+     */
+    private final Component panel;
+
+    /**
+     * Whether the cached bounds are up to date.
+     */
+    private boolean valid;
+
+    /**
+     * Cached screen coordinates of the panel sides.
+     */
+    private int top, right, bottom, left;
+
+    /**
+     * Starts tracking the bounds of the given component.
+     *
+     * @param panel The component whose screen bounds should be cached.
+     */
+    PanelGeometry(Component panel) {
+        this.panel = panel;
+        panel.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                invalidate();
+            }
+
+            @Override
+            public void componentMoved(ComponentEvent e) {
+                invalidate();
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e) {
+                invalidate();
+            }
+        });
+        panel.addHierarchyBoundsListener(new HierarchyBoundsAdapter() {
+            @Override
+            public void ancestorMoved(HierarchyEvent e) {
+                invalidate();
+            }
+
+            @Override
+            public void ancestorResized(HierarchyEvent e) {
+                invalidate();
+            }
+        });
+        panel.addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Drops the cached bounds; they are looked up again on the next query.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Looks the bounds up again if they are not up to date.
+     * A panel that is not showing (e.g. in a headless environment) is treated as if it were at the screen origin.
+     */
+    private void ensureValid() {
+        if (valid) return;
+
+        int x = 0;
+        int y = 0;
+        if (panel.isShowing()) {
+            Point location = panel.getLocationOnScreen();
+            x = location.x;
+            y = location.y;
+        }
+        top = y;
+        right = x + panel.getWidth();
+        bottom = y + panel.getHeight();
+        left = x;
+        valid = true;
+    }
+
+    /**
+     * Retrieves the coordinate of the specified side of the panel.
+     *
+     * @param side The {@link Side} for which the coordinate is required.
+     * @return The relevant screen coordinate of the panel's side.
+     * If the side is TOP or BOTTOM, returns its y; otherwise returns its x.
+     */
+    int getSideCoordinate(Side side) {
+        ensureValid();
+        switch (side) {
+            case TOP:
+                return top;
+            case RIGHT:
+                return right;
+            case BOTTOM:
+                return bottom;
+            default:
+                return left;
+        }
+    }
+
+    /**
+     * @param x The x screen coordinate of the point.
+     * @param y The y screen coordinate of the point.
+     * @return The {@link Side} closest to the specified point. Ties are resolved in the order TOP, RIGHT, BOTTOM, LEFT.
+     */
+    Side getClosestSide(int x, int y) {
+        // not always clear: what if it is diagonal?
+        // for now let's just return something; may be improved later
+        ensureValid();
+
+        Side closest = Side.TOP;
+        int minDistance = Math.abs(top - y);
+
+        int distance = Math.abs(right - x);
+        if (distance < minDistance) {
+            closest = Side.RIGHT;
+            minDistance = distance;
+        }
+        distance = Math.abs(bottom - y);
+        if (distance < minDistance) {
+            closest = Side.BOTTOM;
+            minDistance = distance;
+        }
+        distance = Math.abs(left - x);
+        if (distance < minDistance) {
+            closest = Side.LEFT;
+        }
+        return closest;
+    }
+
+    /**
+     * @param x    The x screen coordinate of the point.
+     * @param y    The y screen coordinate of the point.
+     * @param side The {@link Side} to calculate the distance to.
+     * @return The distance from the point to the panel's side.
+     */
+    int getDistanceToSide(int x, int y, Side side) {
+        ensureValid();
+        switch (side) {
+            case TOP:
+                return Math.abs(y - top);
+            case RIGHT:
+                return Math.abs(x - right);
+            case BOTTOM:
+                return Math.abs(y - bottom);
+            default:
+                return Math.abs(x - left);
+        }
+    }
+}
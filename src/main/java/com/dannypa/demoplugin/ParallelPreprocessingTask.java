@@ -0,0 +1,299 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Background task that runs a {@link ChunkedComputation} on a {@link ForkJoinPool} so that it can be shown by
+ * {@link PreprocessingManager} like any other task.
+ * <p>
+ * The items are split into chunks that are computed in parallel and reduced pairwise in their original order.
+ * The partial result of every chunk is published as soon as the chunk is finished.
+ * Workers only report the number of finished items with {@link #addWorkDone(long)}; the task thread samples it
+ * periodically and turns it into {@link SwingWorker#setProgress(int)} calls, so progress reporting never contends
+ * between workers.
+ * <p>
+ * Cancelling the task stops it before the next chunk starts. If the computation writes into a {@link ResultStore},
+ * every chunk retains the store while it runs, and a store that has been closed cancels the task, since nobody
+ * will see its results anymore. If the computation supports checkpoints, finished chunks
+ * are recorded in a {@link TaskCheckpoint} that is flushed every {@link #CHECKPOINT_INTERVAL} ms; a task that was
+ * cancelled or killed skips the recorded chunks the next time it runs, and the checkpoint is deleted once it succeeds.
+ *
+ * @param <R> The type of the result.
+ */
+public class ParallelPreprocessingTask<R> extends PreprocessingTask<R, R> {
+    /**
+     * Default number of chunks; at least 100 so that progress moves in steps of at most one percent.
+     */
+    static final int DEFAULT_CHUNK_COUNT = 256;
+
+    /**
+     * How often (in ms) the finished items are turned into progress.
+     */
+    private static final long PROGRESS_INTERVAL = 50;
+
+    /**
+     * How often (in ms) the checkpoint is written to the disk.
+     */
+    static final long CHECKPOINT_INTERVAL = 2000;
+
+    /**
+     * The computation to run.
+     */
+    private final ChunkedComputation<R> computation;
+
+    /**
+     * The pool that computes the chunks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The number of chunks the items are split into.
+     */
+    private final int chunkCount;
+
+    /**
+     * The number of items finished by a previous run and restored from the checkpoint; task thread only.
+     */
+    private long restoredItems;
+
+    /**
+     * The directory with the checkpoints; the one under the IDE system directory if null.
+     */
+    private Path checkpointDirectory;
+
+    /**
+     * The checkpoint of the running task; null if the computation does not support checkpoints.
+     */
+    private volatile TaskCheckpoint<R> checkpoint;
+
+    /**
+     * Creates the task that runs on the common pool with the default number of chunks.
+     *
+     * @param computation The computation to run.
+     */
+    public ParallelPreprocessingTask(ChunkedComputation<R> computation) {
+        this(computation, ForkJoinPool.commonPool(), DEFAULT_CHUNK_COUNT);
+    }
+
+    /**
+     * Creates the task.
+     *
+     * @param computation The computation to run.
+     * @param pool        The pool that computes the chunks.
+     * @param chunkCount  The number of chunks the items are split into.
+     */
+    public ParallelPreprocessingTask(ChunkedComputation<R> computation, ForkJoinPool pool, int chunkCount) {
+        if (chunkCount <= 0) {
+            throw new IllegalArgumentException("Chunk count must be positive: " + chunkCount);
+        }
+        this.computation = computation;
+        this.pool = pool;
+        this.chunkCount = (int) Math.max(1, Math.min(chunkCount, computation.size()));
+    }
+
+    /**
+     * @return The number of chunks the items are split into, i.e. the number of published partial results.
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @param checkpointDirectory The directory with the checkpoints, instead of the one under the IDE system directory.
+     */
+    void setCheckpointDirectory(Path checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    @Override
+    protected List<?> getCacheParameters() {
+        // the chunking does not change the result, since the reducer is associative
+        return computation.getCacheParameters();
+    }
+
+    @Override
+    protected Class<?> getCacheClass() {
+        return computation.getClass();
+    }
+
+    @Override
+    protected R doInBackground() throws Exception {
+        setProgress(0);
+        computation.prepare();
+        long size = computation.size();
+        checkpoint = openCheckpoint();
+        restoreCheckpoint();
+        // the restored items are not part of the work of this run
+        setTotalWork(size - restoredItems);
+
+        ForkJoinTask<R> root = pool.submit(new ChunkRange(0, chunkCount));
+        R result;
+        // the checkpoint is closed on every way out, but only deleted once the result is there
+        boolean finished = false;
+        try {
+            long lastCheckpoint = System.nanoTime();
+            while (true) {
+                try {
+                    result = root.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    long completed = restoredItems + getWorkDone();
+                    setFraction((double) completed / Math.max(1, size));
+                    setProgress((int) (completed * 100 / Math.max(1, size)));
+                    if (checkpoint != null
+                            && System.nanoTime() - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(CHECKPOINT_INTERVAL)) {
+                        checkpoint.force();
+                        lastCheckpoint = System.nanoTime();
+                    }
+                }
+            }
+            finished = true;
+        } catch (InterruptedException e) {
+            // cancel(true) interrupts this thread; the running chunks notice it via isCancelled(), and the checkpoint
+            // drops the results of the ones that finish after it is closed
+            root.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            closeCheckpoint(finished);
+        }
+        setFraction(1);
+        setProgress(100);
+        return result;
+    }
+
+    /**
+     * @return The checkpoint of the task, or null if the computation does not support checkpoints
+     * or the checkpoint can't be opened.
+     */
+    private TaskCheckpoint<R> openCheckpoint() {
+        CheckpointCodec<R> codec = computation.getCheckpointCodec();
+        String fingerprint = getFingerprint();
+        if (codec == null || fingerprint == null) return null;
+
+        try {
+            Path directory = checkpointDirectory != null ? checkpointDirectory : TaskCheckpoint.getDefaultDirectory();
+            return TaskCheckpoint.open(directory, fingerprint, chunkCount, codec);
+        } catch (IOException e) {
+            System.out.println("Can't open the checkpoint, starting from scratch: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Counts and publishes the chunks that were finished by a previous run.
+     */
+    private void restoreCheckpoint() {
+        if (checkpoint == null) return;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            if (checkpoint.isFinished(chunk)) {
+                restoredItems += chunkStart(chunk + 1) - chunkStart(chunk);
+                publish(checkpoint.get(chunk));
+            }
+        }
+    }
+
+    /**
+     * Closes the checkpoint.
+     *
+     * @param finished Whether the task has finished, so the checkpoint is not needed anymore.
+     */
+    private void closeCheckpoint(boolean finished) {
+        if (checkpoint == null) return;
+        try {
+            if (finished) {
+                checkpoint.delete();
+            } else {
+                checkpoint.close();
+            }
+        } catch (IOException e) {
+            System.out.println("Can't close the checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param chunk The index of the chunk.
+     * @return The first item of the chunk; chunks differ in size by at most one item.
+     */
+    private long chunkStart(int chunk) {
+        long size = computation.size();
+        return size / chunkCount * chunk + Math.min(chunk, size % chunkCount);
+    }
+
+    /**
+     * Computes the chunks in [firstChunk, lastChunk) by splitting the range in halves.
+     */
+    private class ChunkRange extends RecursiveTask<R> {
+        /**
+         * The first chunk of the range, inclusive.
+         */
+        private final int firstChunk;
+
+        /**
+         * The last chunk of the range, exclusive.
+         */
+        private final int lastChunk;
+
+        /**
+         * @param firstChunk The first chunk of the range, inclusive.
+         * @param lastChunk  The last chunk of the range, exclusive.
+         */
+        ChunkRange(int firstChunk, int lastChunk) {
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+        }
+
+        @Override
+        protected R compute() {
+            if (lastChunk - firstChunk == 1) {
+                TaskCheckpoint<R> checkpoint = ParallelPreprocessingTask.this.checkpoint;
+                if (checkpoint != null && checkpoint.isFinished(firstChunk)) {
+                    // already counted and published by restoreCheckpoint()
+                    return checkpoint.get(firstChunk);
+                }
+                if (ParallelPreprocessingTask.this.isCancelled()) {
+                    throw new CancellationException();
+                }
+
+                long from = chunkStart(firstChunk);
+                long to = chunkStart(lastChunk);
+                // chunks keep running after a cancellation, so the store must not be unmapped under them
+                ResultStore store = computation.getResultStore();
+                if (store != null && !store.retain()) {
+                    throw new CancellationException("The result store is closed");
+                }
+                R partial;
+                try {
+                    partial = computation.computeChunk(from, to);
+                } finally {
+                    if (store != null) {
+                        store.release();
+                    }
+                }
+                if (checkpoint != null) {
+                    checkpoint.put(firstChunk, partial);
+                }
+                addWorkDone(to - from);
+                publish(partial);
+                return partial;
+            }
+
+            int middle = (firstChunk + lastChunk) >>> 1;
+            ChunkRange left = new ChunkRange(firstChunk, middle);
+            left.fork();
+            R right = new ChunkRange(middle, lastChunk).compute();
+            return computation.combine(left.join(), right);
+        }
+    }
+}
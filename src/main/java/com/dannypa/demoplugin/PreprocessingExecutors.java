@@ -0,0 +1,117 @@
+package com.dannypa.demoplugin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors that {@link PreprocessingManager} can run its tasks on instead of the {@link PreprocessingScheduler}.
+ * <p>
+ * A task is a {@link javax.swing.SwingWorker}, i.e. a {@link Runnable} that fires its progress and state changes on
+ * the EDT on its own, so any executor keeps the usual {@code propertyChange} contract of the manager.
+ */
+final class PreprocessingExecutors {
+    /**
+     * System property that selects the executor of the preprocessing panels:
+     * {@value #VIRTUAL} for {@link #virtualThreadPerTask()}, {@value #PROGRESS_MANAGER} for a
+     * {@link ProgressManagerExecutor}, anything else for the {@link PreprocessingScheduler}.
+     */
+    static final String EXECUTOR_PROPERTY = "demoplugin.preprocessing.executor";
+
+    /**
+     * Value of {@link #EXECUTOR_PROPERTY} that selects {@link #virtualThreadPerTask()}.
+     */
+    static final String VIRTUAL = "virtual";
+
+    /**
+     * Value of {@link #EXECUTOR_PROPERTY} that selects a {@link ProgressManagerExecutor}.
+     */
+    static final String PROGRESS_MANAGER = "progressManager";
+
+    /**
+     * Title of the background tasks run by the {@link ProgressManagerExecutor}.
+     */
+    private static final String BACKGROUND_TASK_TITLE = "Preprocessing";
+
+    /**
+     * The shared thread-per-task executor; created on first use.
+     */
+    private static volatile ExecutorService threadPerTask;
+
+    /**
+     * Whether {@link #threadPerTask} uses virtual threads.
+     */
+    private static volatile boolean virtual;
+
+    private PreprocessingExecutors() {
+    }
+
+    /**
+     * @return The executor selected by the {@value #EXECUTOR_PROPERTY} system property,
+     * or null if the tasks should go through the {@link PreprocessingScheduler}.
+     */
+    static Executor getConfigured() {
+        String executor = System.getProperty(EXECUTOR_PROPERTY);
+        if (VIRTUAL.equals(executor)) {
+            return virtualThreadPerTask();
+        } else if (PROGRESS_MANAGER.equals(executor)) {
+            return new ProgressManagerExecutor(null, BACKGROUND_TASK_TITLE);
+        }
+        return null;
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread for every task, so that hundreds of tasks that mostly
+     * wait for I/O can run at once. Virtual threads need Java 21 (or 19/20 with preview features enabled);
+     * on older runtimes the executor falls back to a new daemon platform thread per task.
+     *
+     * @return The shared thread-per-task executor.
+     */
+    static Executor virtualThreadPerTask() {
+        if (threadPerTask == null) {
+            synchronized (PreprocessingExecutors.class) {
+                if (threadPerTask == null) {
+                    ExecutorService executor = createVirtualThreadPerTaskExecutor();
+                    virtual = executor != null;
+                    if (executor == null) {
+                        AtomicInteger threadCount = new AtomicInteger();
+                        executor = Executors.newCachedThreadPool(runnable -> {
+                            Thread thread = new Thread(runnable, "Demo plugin task " + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+                    }
+                    threadPerTask = executor;
+                }
+            }
+        }
+        return threadPerTask;
+    }
+
+    /**
+     * @return Whether {@link #virtualThreadPerTask()} runs the tasks on virtual threads.
+     */
+    static boolean isVirtual() {
+        virtualThreadPerTask();
+        return virtual;
+    }
+
+    /**
+     * Looks {@code Executors.newVirtualThreadPerTaskExecutor()} up reflectively, since the plugin is compiled for
+     * Java 17.
+     *
+     * @return The virtual thread executor, or null if the runtime does not support virtual threads.
+     */
+    private static ExecutorService createVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // java 19/20 without --enable-preview throw UnsupportedOperationException
+            return null;
+        }
+    }
+}
@@ -1,30 +1,80 @@
 package com.dannypa.demoplugin;
 
 import javax.swing.*;
+import java.awt.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 /**
  * A class that performs a preprocessing task in the background,
  * Displays a progress bar during computation, and shows the result after completion.
+ * Intermediate results published by the task are shown in the result panel while the task is still running.
+ * If the task declares its cache parameters and its result is already in the {@link PreprocessingResultCache},
+ * the progress bar is skipped and the cached result is shown right away.
+ * Tasks are run on the given executor (see {@link PreprocessingExecutors}) if there is one, otherwise by the
+ * {@link PreprocessingScheduler}, so identical tasks of several panels share a single computation.
+ * Whatever runs the task, progress and completion always reach {@link #propertyChange} on the EDT.
+ * Tasks that report work units get their throughput and ETA shown on the progress bar by the
+ * {@link ProgressTelemetry} of the task, which also adapts how often the progress is sampled; the task logs its run.
  * This class uses SwingWorker as it works robustly with JProgressBar.
+ *
+ * @param <T> The type of the final result.
+ * @param <V> The type of the intermediate results.
  */
-public class PreprocessingManager implements PropertyChangeListener {
+public class PreprocessingManager<T, V> implements PropertyChangeListener {
     /**
      * Background task that performs the computation.
+     * Replaced by an identical task of another panel if the scheduler coalesces them.
      */
-    private final SwingWorker<Void, Void> task;
+    private PreprocessingTask<T, V> task;
+
+    /**
+     * How often (in ms) the fraction reported by the task is shown in the progress bar until the task reports
+     * work units; from then on the interval adapts to the throughput, see {@link ProgressTelemetry}.
+     */
+    private static final int FRACTION_REFRESH_INTERVAL = 100;
+
+    /**
+     * Name of {@link #propertyChange} in the {@link EdtWatchdog} reports.
+     */
+    private static final String PROPERTY_CHANGE_HANDLER = "PreprocessingManager.propertyChange";
 
     /**
      * Progress bar that shows computation progress.
      */
     private final JProgressBar progressBar;
 
+    /**
+     * Copies the fraction reported by the task into the progress bar while the task is running.
+     */
+    private final Timer fractionTimer = new Timer(FRACTION_REFRESH_INTERVAL, e -> showFraction());
+
+    /**
+     * Throughput and ETA of the running task, see {@link PreprocessingTask#getTelemetry()}; null while no task is
+     * running.
+     */
+    private ProgressTelemetry telemetry;
+
+    /**
+     * Function to configure the progress bar panel and make it visible.
+     */
+    private final Runnable showProgressBarPanel;
+
     /**
      * Function to display the final result panel.
      */
     private final Runnable setUpResultPanel;
 
+    /**
+     * Function to display the result panel next to the progress bar once there are intermediate results.
+     */
+    private final Runnable setUpPartialResultPanel;
+
     /**
      * Function to disable the progress bar panel.
      */
@@ -35,6 +85,51 @@ public class PreprocessingManager implements PropertyChangeListener {
      */
     private final JLabel resultLabel;
 
+    /**
+     * Shows the intermediate and final results in the result label.
+     */
+    private final ResultRenderer<T, V> resultRenderer;
+
+    /**
+     * Cache of the results; null if the results must not be cached.
+     */
+    private final PreprocessingResultCache resultCache;
+
+    /**
+     * The fingerprint of the task in the result cache; null if its result must not be cached.
+     */
+    private String fingerprint;
+
+    /**
+     * The scheduler that runs the task; null to run it with {@link SwingWorker#execute()}.
+     */
+    private final PreprocessingScheduler scheduler;
+
+    /**
+     * The executor that runs the task instead of the scheduler; null to use the scheduler.
+     */
+    private final Executor executor;
+
+    /**
+     * The component that shows the task.
+     */
+    private final Component owner;
+
+    /**
+     * Receives the intermediate results of the task.
+     */
+    private final Consumer<List<V>> chunkListener = this::showChunks;
+
+    /**
+     * Whether the partial result panel has been set up.
+     */
+    private boolean partialResultPanelShown;
+
+    /**
+     * Whether the preprocessing has been cancelled.
+     */
+    private boolean cancelled;
+
     /**
      * Property change handler to react to updating progress of the background task and
      * perform the final operation after the task is done.
@@ -42,16 +137,79 @@ public class PreprocessingManager implements PropertyChangeListener {
      */
     @Override
     public void propertyChange(PropertyChangeEvent propertyChangeEvent) {
-        if (propertyChangeEvent.getPropertyName().equals("progress")) {
-            progressBar.setValue(task.getProgress());
-        } else if (propertyChangeEvent.getPropertyName().equals("state")
-                && propertyChangeEvent.getNewValue() == SwingWorker.StateValue.DONE) {
-            disableProgressBarPanel.run();
-
-            resultLabel.setText("Loaded!");
-            // the proper way would be to make the class generic and then have `private T result` and use it here
-            // but i am just doing proof of concept here.
-            setUpResultPanel.run();
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        long token = watchdog.enter(PROPERTY_CHANGE_HANDLER);
+        try {
+            if (propertyChangeEvent.getPropertyName().equals("progress")) {
+                progressBar.setValue(task.getProgress());
+            } else if (propertyChangeEvent.getPropertyName().equals("state")
+                    && propertyChangeEvent.getNewValue() == SwingWorker.StateValue.DONE) {
+                fractionTimer.stop();
+                disableProgressBarPanel.run();
+                showResult();
+                setUpResultPanel.run();
+            }
+        } finally {
+            watchdog.exit(token);
+        }
+    }
+
+    /**
+     * Shows the fraction reported by the task with {@link PreprocessingTask#setFraction(double)}, or derived from
+     * its work units, if any. For a task that reports work units, also samples the telemetry, shows the throughput
+     * and ETA on the progress bar and reschedules the timer.
+     */
+    private void showFraction() {
+        double fraction = task.getFraction();
+        long totalWork = task.getTotalWork();
+        long workDone = task.getWorkDone();
+        if (fraction < 0 && totalWork > 0) {
+            fraction = (double) workDone / totalWork;
+        }
+        if (fraction >= 0) {
+            progressBar.setValue((int) (Math.min(fraction, 1) * progressBar.getMaximum()));
+        }
+        if (telemetry == null || (totalWork < 0 && workDone == 0)) return;
+
+        telemetry.sample(System.nanoTime(), workDone, totalWork);
+        String description = telemetry.describe();
+        if (description != null) {
+            progressBar.setString(Math.round(progressBar.getPercentComplete() * 100) + "% " + description);
+        }
+        fractionTimer.setDelay(telemetry.getSampleInterval(progressBar.getWidth()));
+    }
+
+    /**
+     * Shows a batch of intermediate results, setting up the partial result panel on the first batch.
+     *
+     * @param chunks The intermediate results published since the previous batch.
+     */
+    private void showChunks(List<V> chunks) {
+        if (task.isDone()) return;
+        if (!partialResultPanelShown) {
+            partialResultPanelShown = true;
+            setUpPartialResultPanel.run();
+        }
+        resultRenderer.renderPartial(resultLabel, chunks);
+    }
+
+    /**
+     * Shows the final result of the finished task, or the reason why there is none.
+     */
+    private void showResult() {
+        try {
+            T result = task.get();
+            if (fingerprint != null) {
+                resultCache.store(fingerprint, result);
+            }
+            resultRenderer.renderResult(resultLabel, result);
+        } catch (CancellationException e) {
+            resultLabel.setText("Cancelled");
+        } catch (ExecutionException e) {
+            resultLabel.setText("Failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            // can't happen: the task is done, so get() does not wait
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -60,36 +218,116 @@ public class PreprocessingManager implements PropertyChangeListener {
      * NB!!! all the fields should be defined before calling this method!!!
      */
     public void startPreprocessing() {
+        fingerprint = resultCache == null ? null : task.getFingerprint();
+        if (fingerprint == null) {
+            runTask();
+            return;
+        }
+
+        resultCache.<T>load(fingerprint).whenComplete((cached, error) -> SwingUtilities.invokeLater(() -> {
+            if (cancelled) return;
+            if (cached == null) {
+                runTask();
+                return;
+            }
+            resultRenderer.renderResult(resultLabel, cached);
+            setUpResultPanel.run();
+        }));
+    }
+
+    /**
+     * Cancels the preprocessing: the task is asked to stop (and interrupted), or is never started if it is still
+     * waiting for the cache lookup. Does nothing if the task has already finished.
+     */
+    public void cancel() {
+        cancelled = true;
+        fractionTimer.stop();
+        // the task logs its own run, which may go on for other panels
+        telemetry = null;
+        task.removePropertyChangeListener(this);
+        task.removeChunkListener(chunkListener);
+        if (executor == null && scheduler != null) {
+            // the task may be shared with other panels; the scheduler cancels it once nobody needs it
+            scheduler.release(task, owner);
+        } else {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Shows the progress bar and runs the task in the background.
+     */
+    private void runTask() {
+        if (executor == null && scheduler != null) {
+            task = scheduler.submit(task, owner);
+        }
+        // a coalesced task may have made progress already
+        progressBar.setValue(task.getProgress());
+        showProgressBarPanel.run();
+
         task.addPropertyChangeListener(this);
-        task.execute();
+        if (executor == null && scheduler != null) {
+            // a coalesced task may have published intermediate results already
+            List<V> published = scheduler.getPublishedChunks(task);
+            if (!published.isEmpty()) {
+                showChunks(published);
+            }
+        }
+        task.addChunkListener(chunkListener);
+        telemetry = task.getTelemetry();
+        fractionTimer.setDelay(FRACTION_REFRESH_INTERVAL);
+        fractionTimer.start();
+        if (executor != null) {
+            executor.execute(task);
+        } else if (scheduler == null) {
+            task.execute();
+        }
     }
 
     /**
-     * Constructs the PreprocessingBackend, initializes the progress bar,
-     * and starts the background computation task.
+     * Constructs the PreprocessingBackend. The progress bar is set up once the task is started
+     * and its result is not in the cache.
      *
      * @param progressBar             The progress bar to display task progress.
      * @param showProgressBarPanel    Runnable that configures the progress bar panel and makes it visible
      * @param disableProgressBarPanel Runnable to hide the progress bar panel after completion.
      * @param resultLabel             The label to display the final result.
+     * @param showPartialResultPanel  Runnable that makes the result panel visible next to the progress bar
+     *                                once the first intermediate results arrive
      * @param showResultPanel         Runnable that configures the result panel and makes it visible
+     * @param task                    The task to run.
+     * @param resultRenderer          Shows the intermediate and final results in the result label.
+     * @param resultCache             The cache of the results; null to always run the task.
+     * @param scheduler               The scheduler that runs the task; null to run it on SwingWorker's executor.
+     * @param executor                The executor that runs the task instead of the scheduler; null to use the
+     *                                scheduler.
+     * @param owner                   The component that shows the task.
      */
     PreprocessingManager(
             JProgressBar progressBar,
             Runnable showProgressBarPanel,
             Runnable disableProgressBarPanel,
             JLabel resultLabel,
+            Runnable showPartialResultPanel,
             Runnable showResultPanel,
-            SwingWorker<Void, Void> task
+            PreprocessingTask<T, V> task,
+            ResultRenderer<T, V> resultRenderer,
+            PreprocessingResultCache resultCache,
+            PreprocessingScheduler scheduler,
+            Executor executor,
+            Component owner
     ) {
         this.task = task;
         this.progressBar = progressBar;
         this.resultLabel = resultLabel;
+        this.setUpPartialResultPanel = showPartialResultPanel;
         this.setUpResultPanel = showResultPanel;
         this.disableProgressBarPanel = disableProgressBarPanel;
-
-        progressBar.setValue(0);
-        showProgressBarPanel.run();
+        this.resultRenderer = resultRenderer;
+        this.resultCache = resultCache;
+        this.showProgressBarPanel = showProgressBarPanel;
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.owner = owner;
     }
 }
-
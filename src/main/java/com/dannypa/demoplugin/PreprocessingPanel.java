@@ -2,10 +2,19 @@ package com.dannypa.demoplugin;
 
 import javax.swing.*;
 import java.awt.*;
-
-public class PreprocessingPanel extends JPanel {
-    private static final Font PROGRESS_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 40);
-    private static final Font RESULT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 60);
+import java.util.concurrent.Executor;
+
+/**
+ * Panel that runs a {@link PreprocessingTask}: shows a progress bar while the task is running,
+ * its intermediate results below the progress bar as they arrive, and the final result once it is done.
+ * The task is cancelled when the panel is removed from a displayable hierarchy, e.g. when its frame is disposed.
+ *
+ * @param <T> The type of the final result.
+ * @param <V> The type of the intermediate results.
+ */
+public class PreprocessingPanel<T, V> extends JPanel {
+    static final Font PROGRESS_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 40);
+    static final Font RESULT_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 60);
 
     /**
      * Panel to display the progress bar.
@@ -27,6 +36,15 @@ public class PreprocessingPanel extends JPanel {
      */
     private final JLabel resultLabel = new JLabel();
 
+    /**
+     * Whether the result panel has been laid out.
+     */
+    private boolean resultPanelSetUp;
+
+    /**
+     * Runs the task and shows its progress and results.
+     */
+    private final PreprocessingManager<T, V> preprocessing;
 
     /**
      * Creates a GridBagConstraints object for components based on weightx and weighty.
@@ -142,15 +160,50 @@ public class PreprocessingPanel extends JPanel {
         panel.revalidate();
     }
 
+    /**
+     * Configures the result panel unless it has already been configured for the intermediate results.
+     */
+    private void setUpResultPanel() {
+        if (resultPanelSetUp) return;
+        resultPanelSetUp = true;
+        setUpResultLabelUI();
+        setUpPanel(resultPanel, resultLabel, new int[]{3, 1, 3}, new int[]{1, 4, 1});
+    }
+
+
+    /**
+     * Creates the panel that shows the final result as text.
+     *
+     * @param task The task to run.
+     */
+    PreprocessingPanel(PreprocessingTask<T, V> task) {
+        this(task, ResultRenderer.text());
+    }
+
+    /**
+     * Creates the panel that runs the task on the executor selected by the
+     * {@value PreprocessingExecutors#EXECUTOR_PROPERTY} system property.
+     *
+     * @param task           The task to run.
+     * @param resultRenderer Shows the intermediate and final results.
+     */
+    PreprocessingPanel(PreprocessingTask<T, V> task, ResultRenderer<T, V> resultRenderer) {
+        this(task, resultRenderer, PreprocessingExecutors.getConfigured());
+    }
 
     /**
      * Creates the panel. Configures the UI using the GridBagLayout and starts the preprocessing.
+     *
+     * @param task           The task to run.
+     * @param resultRenderer Shows the intermediate and final results.
+     * @param executor       The executor that runs the task, e.g. {@link PreprocessingExecutors#virtualThreadPerTask()};
+     *                       null to run it through the {@link PreprocessingScheduler}.
      */
-    PreprocessingPanel(SwingWorker<Void, Void> task) {
+    PreprocessingPanel(PreprocessingTask<T, V> task, ResultRenderer<T, V> resultRenderer, Executor executor) {
         this.setLayout(new BorderLayout());
         this.setBorder(BorderFactory.createLineBorder(Color.BLACK, 5));
 
-        PreprocessingManager preprocessing = new PreprocessingManager(
+        preprocessing = new PreprocessingManager<>(
                 progressBar,
                 () -> {
                     setUpProgressBarUI();
@@ -163,13 +216,31 @@ public class PreprocessingPanel extends JPanel {
                 },
                 resultLabel,
                 () -> {
-                    setUpResultLabelUI();
-                    setUpPanel(resultPanel, resultLabel, new int[]{3, 1, 3}, new int[]{1, 4, 1});
-                    this.add(resultPanel);
+                    setUpResultPanel();
+                    this.add(resultPanel, BorderLayout.SOUTH);
+                    this.revalidate();
+                },
+                () -> {
+                    setUpResultPanel();
+                    // moves the panel to the center if it has been shown below the progress bar
+                    this.add(resultPanel, BorderLayout.CENTER);
+                    this.revalidate();
                 },
-                task
+                task,
+                resultRenderer,
+                PreprocessingResultCache.getInstance(),
+                executor == null ? PreprocessingScheduler.getInstance() : null,
+                executor,
+                this
         );
 
         preprocessing.startPreprocessing();
     }
+
+    @Override
+    public void removeNotify() {
+        // the frame is being disposed: nobody will see the result anymore
+        preprocessing.cancel();
+        super.removeNotify();
+    }
 }
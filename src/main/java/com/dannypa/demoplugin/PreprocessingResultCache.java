@@ -0,0 +1,235 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.application.PathManager;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-disk cache of preprocessing results, keyed by {@link TaskFingerprint}.
+ * <p>
+ * Every result is stored as a serialized file in a directory under the IDE system directory. Since anything can
+ * write into that directory, the files are deserialized through a filter that only admits the JDK value and
+ * collection types and the classes of the plugin, and that bounds the depth, the number of objects and the size of
+ * a result; a file that doesn't pass is deleted like any other unreadable one.
+ * The last-modified time of a file is updated on every hit, and the least recently used files are deleted once
+ * the total size of the cache exceeds its bound. All file operations run one at a time on a background thread.
+ */
+final class PreprocessingResultCache {
+    /**
+     * System property with the maximum total size (in bytes) of the cache.
+     */
+    static final String MAX_BYTES_PROPERTY = "demoplugin.preprocessing.cacheBytes";
+
+    /**
+     * Default maximum total size of the cache.
+     */
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    /**
+     * Extension of the cached result files.
+     */
+    private static final String EXTENSION = ".ser";
+
+    /**
+     * The classes a cached result may consist of, and the limits of its object graph; the size limit is the
+     * bound of the cache, which no result can exceed.
+     */
+    private static final String FILTER_PATTERN = "maxdepth=32;maxrefs=1000000;maxarray=100000000;"
+            + "java.lang.*;java.math.*;java.util.*;com.dannypa.demoplugin.*;!*";
+
+    /**
+     * The cache in the IDE system directory; created on first use.
+     */
+    private static volatile PreprocessingResultCache instance;
+
+    /**
+     * The directory with the cached results.
+     */
+    private final Path directory;
+
+    /**
+     * The maximum total size of the cache, in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Admits only the expected classes and sizes of results, see {@link #FILTER_PATTERN}.
+     */
+    private final ObjectInputFilter filter;
+
+    /**
+     * The thread that reads and writes the files.
+     */
+    private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Demo plugin result cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param directory The directory with the cached results; created when needed.
+     * @param maxBytes  The maximum total size of the cache, in bytes.
+     */
+    PreprocessingResultCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        filter = ObjectInputFilter.Config.createFilter(FILTER_PATTERN + ";maxbytes=" + maxBytes);
+    }
+
+    /**
+     * @return The cache in the IDE system directory, bounded by the {@value #MAX_BYTES_PROPERTY} system property.
+     */
+    static PreprocessingResultCache getInstance() {
+        if (instance == null) {
+            synchronized (PreprocessingResultCache.class) {
+                if (instance == null) {
+                    instance = new PreprocessingResultCache(
+                            Paths.get(PathManager.getSystemPath(), "demo-plugin", "preprocessing-cache"),
+                            Long.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES)
+                    );
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Looks the result up in the background. A result that can't be read or is rejected by the filter is deleted
+     * and treated as missing.
+     *
+     * @param fingerprint The fingerprint of the task.
+     * @param <T>         The type of the result.
+     * @return The future with the cached result, or with null if there is none.
+     */
+    <T> CompletableFuture<T> load(String fingerprint) {
+        return CompletableFuture.supplyAsync(() -> {
+            Path file = getFile(fingerprint);
+            if (!Files.isRegularFile(file)) return null;
+            try (ObjectInputStream input = new PluginObjectInputStream(Files.newInputStream(file), filter)) {
+                @SuppressWarnings("unchecked")
+                T result = (T) input.readObject();
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return result;
+            } catch (IOException | ClassNotFoundException | ClassCastException e) {
+                System.out.println("Can't read the cached result " + file + ": " + e.getMessage());
+                deleteQuietly(file);
+                return null;
+            }
+        }, io);
+    }
+
+    /**
+     * Stores the result in the background and evicts the least recently used results if the cache got too large.
+     * Results that are not {@link Serializable} are ignored.
+     *
+     * @param fingerprint The fingerprint of the task.
+     * @param result      The result to store.
+     */
+    void store(String fingerprint, Object result) {
+        if (!(result instanceof Serializable)) return;
+        io.execute(() -> {
+            Path file = getFile(fingerprint);
+            Path temporary = null;
+            try {
+                Files.createDirectories(directory);
+                // write to a temporary file first so that a crash never leaves a half-written result behind
+                temporary = Files.createTempFile(directory, fingerprint, ".tmp");
+                try (ObjectOutputStream output = new ObjectOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                    output.writeObject(result);
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                evict();
+            } catch (IOException e) {
+                System.out.println("Can't cache the result " + file + ": " + e.getMessage());
+                if (temporary != null) deleteQuietly(temporary);
+            }
+        });
+    }
+
+    /**
+     * Deletes the least recently used results until the cache fits into its bound.
+     *
+     * @throws IOException If the directory can't be listed.
+     */
+    private void evict() throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        long totalBytes = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path path : entries) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                files.add(new CachedFile(path, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                totalBytes += attributes.size();
+            }
+        }
+
+        files.sort(Comparator.comparingLong(file -> file.lastUsed));
+        for (CachedFile file : files) {
+            if (totalBytes <= maxBytes) break;
+            deleteQuietly(file.path);
+            totalBytes -= file.size;
+        }
+    }
+
+    /**
+     * @param fingerprint The fingerprint of the task.
+     * @return The file with the cached result of the task.
+     */
+    private Path getFile(String fingerprint) {
+        return directory.resolve(fingerprint + EXTENSION);
+    }
+
+    /**
+     * @param file The file to delete; failures are ignored.
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A cached result file together with the attributes that matter for eviction.
+     */
+    private static class CachedFile {
+        private final Path path;
+        private final long lastUsed;
+        private final long size;
+
+        CachedFile(Path path, long lastUsed, long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Resolves the classes of the cached results with the plugin class loader rather than the platform one, after
+     * the filter has admitted them.
+     */
+    private static class PluginObjectInputStream extends ObjectInputStream {
+        PluginObjectInputStream(InputStream input, ObjectInputFilter filter) throws IOException {
+            super(new BufferedInputStream(input));
+            setObjectInputFilter(filter);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(description.getName(), false, PreprocessingResultCache.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(description);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+
+import javax.swing.*;
+import java.awt.*;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application service that runs the preprocessing tasks of all {@link PreprocessingPanel}s.
+ * <p>
+ * Instead of SwingWorker's hidden shared executor, tasks run on a pool of configurable size. Waiting tasks are
+ * ordered by priority: tasks shown in the focused window go first, the rest in submission order; the queue is
+ * reordered whenever the focused window changes. Tasks with the same {@link PreprocessingTask#getFingerprint()
+ * fingerprint} are coalesced: a panel that asks for a computation that is already queued or running joins it
+ * and shares its progress and results, and the computation is cancelled only when the last panel releases it.
+ * A job keeps the intermediate results its task has published, so that a panel joining late can show them too
+ * (see {@link #getPublishedChunks}); its progress is read from the task itself.
+ * <p>
+ * {@link #submit} and {@link #release} must be called on the EDT.
+ */
+public final class PreprocessingScheduler implements Disposable {
+    /**
+     * System property with the number of tasks that run at the same time.
+     */
+    static final String CONCURRENCY_PROPERTY = "demoplugin.preprocessing.concurrency";
+
+    /**
+     * The pool that runs the tasks; its queue is ordered by {@link Job#compareTo(Job)}.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Queued and running jobs by task; EDT only.
+     */
+    private final Map<PreprocessingTask<?, ?>, Job> jobs = new HashMap<>();
+
+    /**
+     * Queued and running jobs with a fingerprint by fingerprint; EDT only.
+     */
+    private final Map<String, Job> jobsByFingerprint = new HashMap<>();
+
+    /**
+     * The number of submitted jobs, used to keep the submission order among jobs of equal priority.
+     */
+    private long submittedJobs;
+
+    /**
+     * Reorders the queue when the focused window changes.
+     */
+    private final PropertyChangeListener focusListener = e -> reprioritize();
+
+    /**
+     * Creates the scheduler with the concurrency from the {@value #CONCURRENCY_PROPERTY} system property,
+     * or the number of processors by default.
+     */
+    public PreprocessingScheduler() {
+        int concurrency = Integer.getInteger(CONCURRENCY_PROPERTY, Runtime.getRuntime().availableProcessors());
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "Demo plugin preprocessing " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(
+                concurrency, concurrency, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().addPropertyChangeListener("activeWindow", focusListener);
+    }
+
+    /**
+     * @return The application-wide scheduler.
+     */
+    public static PreprocessingScheduler getInstance() {
+        return ApplicationManager.getApplication().getService(PreprocessingScheduler.class);
+    }
+
+    /**
+     * Sets the number of tasks that run at the same time. Running tasks are not interrupted.
+     *
+     * @param concurrency The number of tasks that run at the same time.
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        if (concurrency > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(concurrency);
+            executor.setCorePoolSize(concurrency);
+        } else {
+            executor.setCorePoolSize(concurrency);
+            executor.setMaximumPoolSize(concurrency);
+        }
+    }
+
+    /**
+     * @return The number of tasks that run at the same time.
+     */
+    public int getConcurrency() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * Schedules the task, or joins an identical task that is already queued or running.
+     *
+     * @param task  The task to run; must not have been started.
+     * @param owner The component that shows the task; used to prioritize the tasks of the focused window.
+     * @param <T>   The type of the final result.
+     * @param <V>   The type of the intermediate results.
+     * @return The task that will produce the result: either the given one or the identical one it was coalesced with.
+     */
+    @SuppressWarnings("unchecked")
+    <T, V> PreprocessingTask<T, V> submit(PreprocessingTask<T, V> task, Component owner) {
+        String fingerprint = task.getFingerprint();
+        Job existing = fingerprint == null ? null : jobsByFingerprint.get(fingerprint);
+        if (existing != null && !existing.task.isCancelled()) {
+            existing.owners.add(owner);
+            reprioritize();
+            // same fingerprint means same computation, hence the same result types
+            return (PreprocessingTask<T, V>) existing.task;
+        }
+
+        Job job = new Job(task, fingerprint, owner, submittedJobs++);
+        // registered before the task starts, so that no batch is missed
+        List<Object> published = job.published;
+        task.addChunkListener(published::addAll);
+        jobs.put(task, job);
+        if (fingerprint != null) {
+            jobsByFingerprint.put(fingerprint, job);
+        }
+        task.addPropertyChangeListener(e -> {
+            if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) {
+                forget(job);
+            }
+        });
+        job.updatePriority();
+        executor.execute(job);
+        return task;
+    }
+
+    /**
+     * Returns the intermediate results the task has published so far, so that an owner that joined a running task
+     * can catch up before it registers its own chunk listener.
+     *
+     * @param task The task returned by {@link #submit}.
+     * @param <V>  The type of the intermediate results.
+     * @return A copy of the published results in their order; empty if the task is not queued or running.
+     */
+    @SuppressWarnings("unchecked")
+    <V> List<V> getPublishedChunks(PreprocessingTask<?, V> task) {
+        Job job = jobs.get(task);
+        // the job only ever receives the chunks of this task
+        return job == null ? List.of() : (List<V>) new ArrayList<>(job.published);
+    }
+
+    /**
+     * Tells the scheduler that the owner does not need the result of the task anymore.
+     * The task is cancelled once no owner needs it.
+     *
+     * @param task  The task returned by {@link #submit}.
+     * @param owner The owner that was passed to {@link #submit}.
+     */
+    void release(PreprocessingTask<?, ?> task, Component owner) {
+        Job job = jobs.get(task);
+        if (job == null) return;
+
+        job.owners.remove(owner);
+        if (job.owners.isEmpty()) {
+            forget(job);
+            executor.remove(job);
+            task.cancel(true);
+        } else {
+            reprioritize();
+        }
+    }
+
+    /**
+     * Removes the job from the maps, so that new submissions are not coalesced with it.
+     *
+     * @param job The finished or cancelled job.
+     */
+    private void forget(Job job) {
+        jobs.remove(job.task, job);
+        if (job.fingerprint != null) {
+            jobsByFingerprint.remove(job.fingerprint, job);
+        }
+    }
+
+    /**
+     * Recomputes the priorities of the queued jobs and puts them back in the new order.
+     */
+    private void reprioritize() {
+        List<Runnable> queued = new ArrayList<>();
+        executor.getQueue().drainTo(queued);
+        for (Runnable runnable : queued) {
+            ((Job) runnable).updatePriority();
+        }
+        executor.getQueue().addAll(queued);
+    }
+
+    @Override
+    public void dispose() {
+        KeyboardFocusManager.getCurrentKeyboardFocusManager().removePropertyChangeListener("activeWindow", focusListener);
+        for (Job job : new ArrayList<>(jobs.values())) {
+            job.task.cancel(true);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * A task in the queue together with the components that wait for it.
+     */
+    private static final class Job implements Runnable, Comparable<Job> {
+        /**
+         * The task to run.
+         */
+        private final PreprocessingTask<?, ?> task;
+
+        /**
+         * The fingerprint of the task; null if it is not coalesced with other tasks.
+         */
+        private final String fingerprint;
+
+        /**
+         * The components that show the task; EDT only.
+         */
+        private final List<Component> owners = new ArrayList<>();
+
+        /**
+         * The intermediate results the task has published so far, for owners that join late; EDT only.
+         */
+        private final List<Object> published = new ArrayList<>();
+
+        /**
+         * The position of the job in the submission order.
+         */
+        private final long sequence;
+
+        /**
+         * Whether one of the owners is in the focused window; read by the pool threads.
+         */
+        private volatile boolean focused;
+
+        Job(PreprocessingTask<?, ?> task, String fingerprint, Component owner, long sequence) {
+            this.task = task;
+            this.fingerprint = fingerprint;
+            this.sequence = sequence;
+            owners.add(owner);
+        }
+
+        /**
+         * Recomputes whether one of the owners is in the focused window; called on the EDT.
+         */
+        void updatePriority() {
+            boolean focused = false;
+            for (Component owner : owners) {
+                Window window = SwingUtilities.getWindowAncestor(owner);
+                if (window != null && window.isActive()) {
+                    focused = true;
+                    break;
+                }
+            }
+            this.focused = focused;
+        }
+
+        @Override
+        public void run() {
+            // does nothing if the task has been cancelled while it was queued
+            task.run();
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (focused != other.focused) {
+                return focused ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
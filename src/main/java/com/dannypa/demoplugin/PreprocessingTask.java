@@ -0,0 +1,222 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Background task shown by {@link PreprocessingManager}.
+ * <p>
+ * Like any {@link SwingWorker}, the task returns its final result from {@link #doInBackground()} and may
+ * {@link #publish(Object[])} intermediate results while it runs. SwingWorker batches published values and delivers
+ * them on the EDT; this class forwards every batch to the registered chunk listeners, so the result panel can show
+ * partial output before the computation finishes.
+ * <p>
+ * A task whose result is fully determined by a few parameters can declare them in {@link #getCacheParameters()};
+ * its result is then cached on disk and reused on the next run (see {@link PreprocessingResultCache}).
+ * <p>
+ * Besides {@link #setProgress(int)}, which fires a property change every time the value changes, a task may report
+ * its progress with {@link #setFraction(double)}: a plain store that is cheap enough for an inner loop.
+ * The fraction is picked up periodically by {@link PreprocessingManager} and {@link ProgressManagerExecutor}.
+ * <p>
+ * A task that knows how much work it does should also report raw work units: the total with
+ * {@link #setTotalWork(long)} and the finished units with {@link #addWorkDone(long)}, which any worker thread may
+ * call without contention. {@link PreprocessingManager} turns them into throughput and ETA, see
+ * {@link ProgressTelemetry}, and uses them for the progress bar if the task reports no fraction. The telemetry
+ * belongs to the task, so that all panels showing a shared task sample the same one, and the run is written to the
+ * throughput history once, when the task is done.
+ *
+ * @param <T> The type of the final result.
+ * @param <V> The type of the intermediate results.
+ */
+public abstract class PreprocessingTask<T, V> extends SwingWorker<T, V> {
+    /**
+     * Opaque access to {@link #fraction}: the readers only need to see the value eventually,
+     * so the writer does not have to pay for a volatile store.
+     */
+    private static final VarHandle FRACTION;
+
+    static {
+        try {
+            FRACTION = MethodHandles.lookup().findVarHandle(PreprocessingTask.class, "fraction", double.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The fraction of the work done, from 0 to 1; negative if the task does not report it.
+     */
+    @SuppressWarnings("FieldMayBeFinal")
+    private double fraction = -1;
+
+    /**
+     * The work units done so far.
+     */
+    private final LongAdder workDone = new LongAdder();
+
+    /**
+     * The total work units of the task; negative if the task does not report them.
+     */
+    private volatile long totalWork = -1;
+
+    /**
+     * Throughput and ETA of the task; null until a panel shows the task, see {@link #getTelemetry()}. EDT only.
+     */
+    private ProgressTelemetry telemetry;
+
+    /**
+     * Listeners that receive the batches of intermediate results on the EDT.
+     */
+    private final List<Consumer<List<V>>> chunkListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param listener The listener that receives the batches of intermediate results on the EDT.
+     */
+    void addChunkListener(Consumer<List<V>> listener) {
+        chunkListeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to remove.
+     */
+    void removeChunkListener(Consumer<List<V>> listener) {
+        chunkListeners.remove(listener);
+    }
+
+    /**
+     * Reports the fraction of the work done. Unlike {@link #setProgress(int)} this is a plain store without any
+     * events, so it can be called from an inner loop; the value is sampled by the UI at its own pace.
+     *
+     * @param fraction The fraction of the work done, from 0 to 1.
+     */
+    protected final void setFraction(double fraction) {
+        FRACTION.setOpaque(this, fraction);
+    }
+
+    /**
+     * @return The fraction of the work done, from 0 to 1; negative if the task does not report it.
+     */
+    final double getFraction() {
+        return (double) FRACTION.getOpaque(this);
+    }
+
+    /**
+     * Reports the total number of work units of the task, e.g. before it starts working.
+     *
+     * @param totalWork The total work units.
+     */
+    protected final void setTotalWork(long totalWork) {
+        this.totalWork = totalWork;
+    }
+
+    /**
+     * Reports finished work units. Cheap enough for an inner loop and may be called concurrently by any number of
+     * workers; the counter is only summed when the UI samples it.
+     *
+     * @param units The number of units finished since the previous call.
+     */
+    protected final void addWorkDone(long units) {
+        workDone.add(units);
+    }
+
+    /**
+     * @return The work units done so far.
+     */
+    final long getWorkDone() {
+        return workDone.sum();
+    }
+
+    /**
+     * @return The total work units of the task; negative if the task does not report them.
+     */
+    final long getTotalWork() {
+        return totalWork;
+    }
+
+    /**
+     * Returns the telemetry of the task, creating it on the first call; the run is written to the throughput
+     * history when the task is done. Must be called on the EDT.
+     *
+     * @return The telemetry shared by all panels that show the task.
+     */
+    final ProgressTelemetry getTelemetry() {
+        if (telemetry == null) {
+            telemetry = new ProgressTelemetry(getCacheClass().getName(), System.nanoTime(), getWorkDone());
+            if (getState() == StateValue.DONE) {
+                finishTelemetry();
+            } else {
+                addPropertyChangeListener(event -> {
+                    if ("state".equals(event.getPropertyName()) && event.getNewValue() == StateValue.DONE) {
+                        finishTelemetry();
+                    }
+                });
+            }
+        }
+        return telemetry;
+    }
+
+    /**
+     * Writes the run of the finished task to the throughput history.
+     */
+    private void finishTelemetry() {
+        String outcome;
+        if (isCancelled()) {
+            outcome = "cancelled";
+        } else {
+            try {
+                get();
+                outcome = "done";
+            } catch (ExecutionException e) {
+                outcome = "failed";
+            } catch (InterruptedException e) {
+                // can't happen: the task is done, so get() does not wait
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        telemetry.finish(outcome, System.nanoTime(), getWorkDone());
+    }
+
+    /**
+     * @return The parameters that, together with {@link #getCacheClass()}, fully determine the result;
+     * null (the default) if the result must not be cached. The result must be {@link Serializable} to be cached.
+     */
+    protected List<?> getCacheParameters() {
+        return null;
+    }
+
+    /**
+     * @return The class that identifies the computation in the cache; the class of the task by default.
+     */
+    protected Class<?> getCacheClass() {
+        return getClass();
+    }
+
+    /**
+     * @return The fingerprint of the task in the result cache, or null if the result must not be cached.
+     */
+    final String getFingerprint() {
+        List<?> parameters = getCacheParameters();
+        return parameters == null ? null : TaskFingerprint.of(getCacheClass(), parameters);
+    }
+
+    /**
+     * Forwards a batch of intermediate results to the chunk listeners.
+     * Subclasses that override this method should call it to keep the listeners working.
+     *
+     * @param chunks The intermediate results published since the previous batch.
+     */
+    @Override
+    protected void process(List<V> chunks) {
+        for (Consumer<List<V>> listener : chunkListeners) {
+            listener.accept(chunks);
+        }
+    }
+}
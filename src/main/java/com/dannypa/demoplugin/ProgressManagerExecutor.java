@@ -0,0 +1,95 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that runs preprocessing tasks as {@link Task.Backgroundable}s, so they use the platform's pooled threads,
+ * show up in the IDE's background task UI and can be cancelled from there.
+ * <p>
+ * The task reports its progress with the cheap {@link PreprocessingTask#setFraction(double)}; the fraction is
+ * copied into the {@link ProgressIndicator} every {@link #MIRROR_INTERVAL} ms, and the panel's progress bar is
+ * updated from the same fraction by {@link PreprocessingManager}. Cancelling the indicator cancels the task.
+ * Must be called on the EDT.
+ */
+final class ProgressManagerExecutor implements Executor {
+    /**
+     * How often (in ms) the fraction of the task is copied into the indicator.
+     */
+    static final long MIRROR_INTERVAL = 100;
+
+    /**
+     * The project the tasks belong to; null for application-wide tasks.
+     */
+    private final Project project;
+
+    /**
+     * The title shown in the background task UI.
+     */
+    private final String title;
+
+    /**
+     * @param project The project the tasks belong to; null for application-wide tasks.
+     * @param title   The title shown in the background task UI.
+     */
+    ProgressManagerExecutor(@Nullable Project project, @NotNull String title) {
+        this.project = project;
+        this.title = title;
+    }
+
+    @Override
+    public void execute(@NotNull Runnable runnable) {
+        PreprocessingTask<?, ?> task = runnable instanceof PreprocessingTask ? (PreprocessingTask<?, ?>) runnable : null;
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, title, true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                if (task == null) {
+                    runnable.run();
+                    return;
+                }
+
+                indicator.setIndeterminate(false);
+                ScheduledFuture<?> mirror = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                        () -> mirror(task, indicator), 0, MIRROR_INTERVAL, TimeUnit.MILLISECONDS
+                );
+                try {
+                    task.run();
+                } finally {
+                    mirror.cancel(false);
+                    mirror(task, indicator);
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                if (task != null) task.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Copies the fraction of the task into the indicator, and cancels the task if the indicator was cancelled.
+     *
+     * @param task      The running task.
+     * @param indicator The indicator of the background task.
+     */
+    private static void mirror(PreprocessingTask<?, ?> task, ProgressIndicator indicator) {
+        if (indicator.isCanceled()) {
+            task.cancel(true);
+            return;
+        }
+        double fraction = task.getFraction();
+        if (fraction >= 0) {
+            indicator.setFraction(fraction);
+        }
+    }
+}
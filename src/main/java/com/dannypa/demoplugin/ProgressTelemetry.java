@@ -0,0 +1,260 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the work units a {@link PreprocessingTask} reports with {@link PreprocessingTask#addWorkDone(long)} into
+ * throughput, ETA and stall information for its progress bar, and writes a summary of every run to a history file.
+ * <p>
+ * The task creates its telemetry when the first {@link PreprocessingManager} shows it (see
+ * {@link PreprocessingTask#getTelemetry()}), and every manager showing the task calls {@link #sample} from its
+ * refresh timer. The throughput is an exponential moving average over about {@value #SMOOTHING_WINDOW} ms, so it
+ * follows changes quickly without flickering, and the timer is rescheduled with {@link #getSampleInterval(int)}:
+ * often enough that the bar moves by about one pixel per sample, but never faster than the display refreshes and
+ * never so rarely that the numbers go stale.
+ * <p>
+ * The history in {@value #HISTORY_FILE_NAME} in the IDE log directory has one line per run with the task, its
+ * outcome, the work done, the duration, the average and peak throughput and the number of stalls, so throughput
+ * regressions show up across runs; the task calls {@link #finish} once it is done, and the line is written on a
+ * pooled thread. All methods are called on the EDT.
+ */
+final class ProgressTelemetry {
+    /**
+     * The time constant of the throughput average, in ms.
+     */
+    private static final long SMOOTHING_WINDOW = 2000;
+
+    /**
+     * How long (in ms) a task may report no work before it counts as stalled.
+     */
+    static final long STALL_THRESHOLD = 2000;
+
+    /**
+     * The shortest sample interval in ms: one frame of the display.
+     */
+    static final int MIN_SAMPLE_INTERVAL = 1000 / FramePacer.DEFAULT_FRAME_RATE;
+
+    /**
+     * The longest sample interval in ms, so that the throughput, ETA and stall state stay current.
+     */
+    static final int MAX_SAMPLE_INTERVAL = 500;
+
+    /**
+     * Name of the history file in the IDE log directory.
+     */
+    private static final String HISTORY_FILE_NAME = "demo-plugin-throughput.log";
+
+    /**
+     * Size of the history file after which it is rolled over to a single backup.
+     */
+    private static final long MAX_HISTORY_BYTES = 1024 * 1024;
+
+    /**
+     * The name of the task in the history.
+     */
+    private final String taskName;
+
+    /**
+     * The time the telemetry started, in {@link System#nanoTime()} units.
+     */
+    private final long startNanos;
+
+    /**
+     * The time of the previous sample.
+     */
+    private long lastSampleNanos;
+
+    /**
+     * The work done at the previous sample.
+     */
+    private long lastWorkDone;
+
+    /**
+     * The work done when the telemetry started, e.g. by a task shared with another panel; not counted in the
+     * history.
+     */
+    private final long initialWorkDone;
+
+    /**
+     * The time the work done last changed.
+     */
+    private long lastProgressNanos;
+
+    /**
+     * The total work of the task; negative if unknown.
+     */
+    private long totalWork = -1;
+
+    /**
+     * The smoothed throughput in work units per second; negative before the first sample.
+     */
+    private double throughput = -1;
+
+    /**
+     * The highest smoothed throughput so far.
+     */
+    private double peakThroughput;
+
+    /**
+     * Whether the task is stalled right now.
+     */
+    private boolean stalled;
+
+    /**
+     * The number of stalls so far.
+     */
+    private int stallCount;
+
+    /**
+     * @param taskName The name of the task in the history.
+     * @param nowNanos The current time, in {@link System#nanoTime()} units.
+     * @param workDone The work units the task has done already.
+     */
+    ProgressTelemetry(String taskName, long nowNanos, long workDone) {
+        this.taskName = taskName;
+        startNanos = nowNanos;
+        lastSampleNanos = nowNanos;
+        lastProgressNanos = nowNanos;
+        lastWorkDone = workDone;
+        initialWorkDone = workDone;
+    }
+
+    /**
+     * Records the work done by the task at the given time.
+     *
+     * @param nowNanos  The time of the sample, in {@link System#nanoTime()} units.
+     * @param workDone  The work units done so far.
+     * @param totalWork The total work units of the task; negative if unknown.
+     */
+    void sample(long nowNanos, long workDone, long totalWork) {
+        this.totalWork = totalWork;
+        long elapsed = nowNanos - lastSampleNanos;
+        if (elapsed <= 0) return;
+        double instant = (workDone - lastWorkDone) * 1e9 / elapsed;
+        // the weight of the new sample grows with the time it covers
+        double weight = 1 - Math.exp(-elapsed / (double) TimeUnit.MILLISECONDS.toNanos(SMOOTHING_WINDOW));
+        throughput = throughput < 0 ? instant : throughput + weight * (instant - throughput);
+        peakThroughput = Math.max(peakThroughput, throughput);
+
+        if (workDone != lastWorkDone) {
+            lastProgressNanos = nowNanos;
+            stalled = false;
+        } else if (!stalled && nowNanos - lastProgressNanos > TimeUnit.MILLISECONDS.toNanos(STALL_THRESHOLD)) {
+            stalled = true;
+            stallCount++;
+        }
+        lastSampleNanos = nowNanos;
+        lastWorkDone = workDone;
+    }
+
+    /**
+     * @return The smoothed throughput in work units per second; negative if unknown yet.
+     */
+    double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return The estimated time until the task is done, in seconds; negative if unknown.
+     */
+    long getEtaSeconds() {
+        if (totalWork < 0 || throughput <= 0) return -1;
+        return (long) Math.ceil(Math.max(0, totalWork - lastWorkDone) / throughput);
+    }
+
+    /**
+     * @return Whether the task has reported no work for longer than {@value #STALL_THRESHOLD} ms.
+     */
+    boolean isStalled() {
+        return stalled;
+    }
+
+    /**
+     * @param barWidth The width of the progress bar in pixels.
+     * @return The interval until the next sample in ms: the time the bar takes to move by a pixel at the
+     * current throughput, within [{@link #MIN_SAMPLE_INTERVAL}, {@link #MAX_SAMPLE_INTERVAL}].
+     */
+    int getSampleInterval(int barWidth) {
+        if (totalWork <= 0 || throughput <= 0 || barWidth <= 0) return MAX_SAMPLE_INTERVAL;
+        double millisPerPixel = totalWork / (double) barWidth / throughput * 1000;
+        return (int) Math.max(MIN_SAMPLE_INTERVAL, Math.min(MAX_SAMPLE_INTERVAL, millisPerPixel));
+    }
+
+    /**
+     * @return The throughput and ETA for the progress bar, e.g. "1.2M/s, ETA 0:42", or "stalled"; null if
+     * there is nothing to show yet.
+     */
+    String describe() {
+        if (stalled) return "stalled";
+        if (throughput < 0) return null;
+        String description = formatCount(throughput) + "/s";
+        long eta = getEtaSeconds();
+        if (eta >= 0) {
+            description += String.format(", ETA %d:%02d", eta / 60, eta % 60);
+        }
+        return description;
+    }
+
+    /**
+     * Appends the summary of the run to the history file on a pooled thread.
+     *
+     * @param outcome  How the task ended, e.g. "done" or "cancelled".
+     * @param nowNanos The time the task ended, in {@link System#nanoTime()} units.
+     * @param workDone The work units done in the end.
+     */
+    void finish(String outcome, long nowNanos, long workDone) {
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(nowNanos - startNanos);
+        long work = workDone - initialWorkDone;
+        double average = durationMillis == 0 ? 0 : work * 1000.0 / durationMillis;
+        String line = Instant.now()
+                + " task=" + taskName
+                + " outcome=" + outcome
+                + " work=" + work
+                + " totalWork=" + totalWork
+                + " durationMs=" + durationMillis
+                + " avgPerSecond=" + Math.round(average)
+                + " peakPerSecond=" + Math.round(peakThroughput)
+                + " stalls=" + stallCount
+                + "\n";
+        ApplicationManager.getApplication().executeOnPooledThread(() -> appendHistory(line));
+    }
+
+    /**
+     * Appends a line to the history file, rolling it over if it is too large.
+     *
+     * @param line The line to append.
+     */
+    private static void appendHistory(String line) {
+        try {
+            Path file = Paths.get(PathManager.getLogPath(), HISTORY_FILE_NAME);
+            if (Files.exists(file) && Files.size(file) >= MAX_HISTORY_BYTES) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Can't write the throughput history: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param count A number of work units.
+     * @return The number with a k, M or G suffix, e.g. "1.2M".
+     */
+    static String formatCount(double count) {
+        if (count < 1_000) return String.valueOf(Math.round(count));
+        if (count < 1_000_000) return String.format("%.1fk", count / 1_000);
+        if (count < 1_000_000_000) return String.format("%.1fM", count / 1_000_000);
+        return String.format("%.1fG", count / 1_000_000_000);
+    }
+}
@@ -0,0 +1,110 @@
+package com.dannypa.demoplugin;
+
+/**
+ * How the followed component of a {@link MouseFollowAndResizePanel} grows with the distance between the mouse and
+ * the side of the panel it entered from.
+ * <p>
+ * A strategy is never evaluated per mouse event: the panel {@link #compile compiles} it into a {@link ResizeTable}
+ * with the size for every distance up to the size of the panel, so the cost of a curve only matters when the
+ * panel or the component changes size.
+ */
+public interface ResizeStrategy {
+    /**
+     * System property that selects the strategy of new panels: {@code linear} (default), {@code eased} or
+     * {@code stepped}.
+     */
+    String STRATEGY_PROPERTY = "demoplugin.follow.resize";
+
+    /**
+     * The number of steps of the strategy selected with {@code stepped}.
+     */
+    int DEFAULT_STEPS = 8;
+
+    /**
+     * @param original The original dimension (width or height) of the component.
+     * @param distance The distance from the mouse to the entrance side, non-negative.
+     * @return The dimension of the component at the distance.
+     */
+    int dimension(int original, int distance);
+
+    /**
+     * Evaluates the strategy for every distance from 0 to {@code maxDistance}.
+     *
+     * @param originalWidth  The original width of the component.
+     * @param originalHeight The original height of the component.
+     * @param maxDistance    The largest distance that needs an exact entry.
+     * @return The lookup table.
+     */
+    default ResizeTable compile(int originalWidth, int originalHeight, int maxDistance) {
+        long[] sizes = new long[maxDistance + 1];
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            sizes[distance] = ResizeTable.pack(dimension(originalWidth, distance), dimension(originalHeight, distance));
+        }
+        return new ResizeTable(sizes, originalWidth, originalHeight);
+    }
+
+    /**
+     * currentD = min(originalD / b + k * distance * originalD, originalD).
+     *
+     * @param initialScale  Scaling factor b: the component starts at 1/b of its original size.
+     * @param scalingFactor Scaling factor k: how fast the component grows with the distance.
+     * @return The linear strategy.
+     */
+    static ResizeStrategy linear(int initialScale, double scalingFactor) {
+        return (original, distance) -> Math.min(
+                original / initialScale + (int) ((distance * scalingFactor) * original),
+                original
+        );
+    }
+
+    /**
+     * Grows from 1/b of the original size quickly at first and slows down towards the original size (cubic ease-out).
+     *
+     * @param initialScale     Scaling factor b: the component starts at 1/b of its original size.
+     * @param fullSizeDistance The distance at which the component reaches its original size.
+     * @return The eased strategy.
+     */
+    static ResizeStrategy eased(int initialScale, int fullSizeDistance) {
+        return (original, distance) -> {
+            double t = Math.min(1, (double) distance / fullSizeDistance);
+            double eased = 1 - Math.pow(1 - t, 3);
+            int initial = original / initialScale;
+            return initial + (int) Math.round((original - initial) * eased);
+        };
+    }
+
+    /**
+     * Grows linearly from 1/b of the original size, but in a few discrete steps.
+     *
+     * @param initialScale     Scaling factor b: the component starts at 1/b of its original size.
+     * @param fullSizeDistance The distance at which the component reaches its original size.
+     * @param steps            The number of steps.
+     * @return The stepped strategy.
+     */
+    static ResizeStrategy stepped(int initialScale, int fullSizeDistance, int steps) {
+        return (original, distance) -> {
+            int step = (int) Math.min(steps, (long) distance * steps / fullSizeDistance);
+            int initial = original / initialScale;
+            return initial + (original - initial) * step / steps;
+        };
+    }
+
+    /**
+     * Creates the strategy selected by name, with parameters that match the linear strategy: it starts at the same
+     * size and reaches the original size at the same distance.
+     *
+     * @param name          {@code linear}, {@code eased} or {@code stepped}; anything else means linear.
+     * @param initialScale  Scaling factor b of the linear strategy.
+     * @param scalingFactor Scaling factor k of the linear strategy.
+     * @return The strategy.
+     */
+    static ResizeStrategy named(String name, int initialScale, double scalingFactor) {
+        int fullSizeDistance = Math.max(1, (int) Math.ceil((1 - 1.0 / initialScale) / scalingFactor));
+        if ("eased".equals(name)) {
+            return eased(initialScale, fullSizeDistance);
+        } else if ("stepped".equals(name)) {
+            return stepped(initialScale, fullSizeDistance, DEFAULT_STEPS);
+        }
+        return linear(initialScale, scalingFactor);
+    }
+}
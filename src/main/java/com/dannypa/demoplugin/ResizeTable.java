@@ -0,0 +1,74 @@
+package com.dannypa.demoplugin;
+
+/**
+ * A {@link ResizeStrategy} compiled for one original size: the width and height of the component for every
+ * distance, packed into one long per distance, so a lookup is a single array read.
+ * Distances past the end of the table get the last entry.
+ */
+final class ResizeTable {
+    /**
+     * The packed sizes by distance.
+     */
+    private final long[] sizes;
+
+    /**
+     * The original size the table was compiled for.
+     */
+    private final int originalWidth, originalHeight;
+
+    /**
+     * @param sizes          The packed sizes by distance, see {@link #pack(int, int)}; at least one.
+     * @param originalWidth  The original width the table was compiled for.
+     * @param originalHeight The original height the table was compiled for.
+     */
+    ResizeTable(long[] sizes, int originalWidth, int originalHeight) {
+        this.sizes = sizes;
+        this.originalWidth = originalWidth;
+        this.originalHeight = originalHeight;
+    }
+
+    /**
+     * @param distance The distance from the mouse to the entrance side, non-negative.
+     * @return The packed size at the distance; unpack with {@link #width(long)} and {@link #height(long)}.
+     */
+    long get(int distance) {
+        return sizes[Math.min(distance, sizes.length - 1)];
+    }
+
+    /**
+     * @param originalWidth  The original width of the component.
+     * @param originalHeight The original height of the component.
+     * @param maxDistance    The largest distance that needs an exact entry.
+     * @return Whether the table can be used for the component.
+     */
+    boolean covers(int originalWidth, int originalHeight, int maxDistance) {
+        return this.originalWidth == originalWidth
+                && this.originalHeight == originalHeight
+                && sizes.length > maxDistance;
+    }
+
+    /**
+     * @param width  The width.
+     * @param height The height.
+     * @return The size packed into a long.
+     */
+    static long pack(int width, int height) {
+        return (long) width << Integer.SIZE | (height & 0xffffffffL);
+    }
+
+    /**
+     * @param size A packed size.
+     * @return Its width.
+     */
+    static int width(long size) {
+        return (int) (size >>> Integer.SIZE);
+    }
+
+    /**
+     * @param size A packed size.
+     * @return Its height.
+     */
+    static int height(long size) {
+        return (int) size;
+    }
+}
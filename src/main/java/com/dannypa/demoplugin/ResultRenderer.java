@@ -0,0 +1,40 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * Shows the results of a {@link PreprocessingTask} in the result label of a {@link PreprocessingPanel}.
+ * All methods are called on the EDT.
+ *
+ * @param <T> The type of the final result.
+ * @param <V> The type of the intermediate results.
+ */
+public interface ResultRenderer<T, V> {
+    /**
+     * Shows a batch of intermediate results. Called for every batch while the task is running;
+     * does nothing by default.
+     *
+     * @param label  The label to show the results in.
+     * @param chunks The intermediate results published since the previous batch.
+     */
+    default void renderPartial(JLabel label, List<V> chunks) {
+    }
+
+    /**
+     * Shows the final result.
+     *
+     * @param label  The label to show the result in.
+     * @param result The final result of the task.
+     */
+    void renderResult(JLabel label, T result);
+
+    /**
+     * @param <T> The type of the final result.
+     * @param <V> The type of the intermediate results.
+     * @return A renderer that shows the final result as text and ignores the intermediate results.
+     */
+    static <T, V> ResultRenderer<T, V> text() {
+        return (label, result) -> label.setText(String.valueOf(result));
+    }
+}
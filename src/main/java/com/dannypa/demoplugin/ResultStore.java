@@ -0,0 +1,463 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.application.PathManager;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Off-heap storage for large primitive results of a {@link PreprocessingTask}, so that they don't end up as objects
+ * on the IDE heap and don't add to its GC pauses.
+ * <p>
+ * A store is a temporary memory-mapped file; every table is mapped as its own region of the file. Tables are
+ * written with absolute puts, so workers may fill different indices concurrently, and read in place: the buffer
+ * views of a table share its memory, so the result panel can show a table without copying it.
+ * <p>
+ * The memory is unmapped and the file is deleted as soon as the store is closed and nobody uses it anymore: the
+ * owner of the store closes it (a {@link MouseFollowAndResizeFrame} does it for its resources when it is closed or
+ * disposed, see {@link MouseFollowAndResizeFrame#addResource(AutoCloseable)}), and a task that writes in the
+ * background brackets its work with {@link #retain()} and {@link #release()}, so that the memory is not unmapped
+ * under it. Tables and their views must not be used after the store is released; on the EDT this means after the
+ * store is closed.
+ */
+public final class ResultStore implements AutoCloseable {
+    /**
+     * Extension of the store files.
+     */
+    private static final String EXTENSION = ".bin";
+
+    /**
+     * Alignment of the tables in the file, so that every table starts at a multiple of its element size.
+     */
+    private static final int ALIGNMENT = Long.BYTES;
+
+    /**
+     * Unmaps a buffer right away instead of when it is collected: {@code sun.misc.Unsafe#invokeCleaner};
+     * null if it is not available, in which case the memory is released by the GC.
+     */
+    private static final Method INVOKE_CLEANER;
+
+    /**
+     * The {@code sun.misc.Unsafe} instance {@link #INVOKE_CLEANER} is called on.
+     */
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.out.println("Can't unmap result stores eagerly: " + e.getMessage());
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * The store file; deleted when the channel is closed, or right away on systems that keep open files usable.
+     */
+    private final Path file;
+
+    /**
+     * The channel the tables are mapped through.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped regions of the tables.
+     */
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    /**
+     * The end of the last table in the file.
+     */
+    private long end;
+
+    /**
+     * The number of users: the owner until {@link #close()}, plus every {@link #retain()} without a
+     * {@link #release()}. The memory is released when it drops to zero.
+     */
+    private final AtomicInteger users = new AtomicInteger(1);
+
+    /**
+     * Whether the owner has closed the store.
+     */
+    private volatile boolean closed;
+
+    private ResultStore(Path file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    /**
+     * @return The directory with the store files under the IDE system directory.
+     */
+    static Path getDefaultDirectory() {
+        return Paths.get(PathManager.getSystemPath(), "demo-plugin", "results");
+    }
+
+    /**
+     * Creates an empty store in the directory under the IDE system directory.
+     *
+     * @return The store.
+     * @throws IOException If the file can't be created.
+     */
+    public static ResultStore create() throws IOException {
+        return create(getDefaultDirectory());
+    }
+
+    /**
+     * Creates an empty store.
+     *
+     * @param directory The directory of the store file.
+     * @return The store.
+     * @throws IOException If the file can't be created.
+     */
+    public static ResultStore create(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "results", EXTENSION);
+        FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE
+        );
+        return new ResultStore(file, channel);
+    }
+
+    /**
+     * @param length The number of elements.
+     * @return A new table of zeros.
+     * @throws IOException If the file can't be extended.
+     */
+    public LongTable newLongTable(int length) throws IOException {
+        return new LongTable(this, map(length, Long.BYTES), length);
+    }
+
+    /**
+     * @param length The number of elements.
+     * @return A new table of zeros.
+     * @throws IOException If the file can't be extended.
+     */
+    public IntTable newIntTable(int length) throws IOException {
+        return new IntTable(this, map(length, Integer.BYTES), length);
+    }
+
+    /**
+     * @param length The number of elements.
+     * @return A new table of zeros.
+     * @throws IOException If the file can't be extended.
+     */
+    public DoubleTable newDoubleTable(int length) throws IOException {
+        return new DoubleTable(this, map(length, Double.BYTES), length);
+    }
+
+    /**
+     * Maps a new region at the end of the file.
+     *
+     * @param length      The number of elements.
+     * @param elementSize The size of an element in bytes.
+     * @return The mapped region.
+     * @throws IOException If the file can't be extended.
+     */
+    private synchronized ByteBuffer map(int length, int elementSize) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Result store is closed");
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must not be negative: " + length);
+        }
+        long size = (long) length * elementSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Table is too large: " + size + " bytes");
+        }
+        // mapping past the end of the file extends it
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, end, size);
+        regions.add(region);
+        end += (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        return region.order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return The total size of the tables in bytes.
+     */
+    public synchronized long size() {
+        return end;
+    }
+
+    /**
+     * Registers a user of the memory, e.g. a task that is going to write into the tables in the background.
+     *
+     * @return Whether the store can be used; false if it has been closed already.
+     */
+    public boolean retain() {
+        while (true) {
+            int current = users.get();
+            if (current == 0 || closed) return false;
+            if (users.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * Unregisters a user registered with {@link #retain()}; the memory is released if the store is closed and this
+     * was the last user.
+     */
+    public void release() {
+        if (users.decrementAndGet() == 0) {
+            unmap();
+        }
+    }
+
+    /**
+     * @return Whether the owner has closed the store.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the store: releases the memory right away, or once the last user has released it. Does nothing if
+     * the store is closed already.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        release();
+    }
+
+    /**
+     * Unmaps the tables and deletes the file.
+     */
+    private synchronized void unmap() {
+        if (INVOKE_CLEANER != null) {
+            for (MappedByteBuffer region : regions) {
+                try {
+                    INVOKE_CLEANER.invoke(UNSAFE, region);
+                } catch (ReflectiveOperationException | RuntimeException e) {
+                    System.out.println("Can't unmap the result store: " + e.getMessage());
+                }
+            }
+        }
+        regions.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Can't delete the result store " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * A table of longs in a {@link ResultStore}.
+     */
+    public static final class LongTable {
+        /**
+         * The store the table belongs to.
+         */
+        private final ResultStore store;
+
+        /**
+         * The elements.
+         */
+        private final LongBuffer buffer;
+
+        /**
+         * @param store  The store the table belongs to.
+         * @param region The mapped region of the table.
+         * @param length The number of elements.
+         */
+        private LongTable(ResultStore store, ByteBuffer region, int length) {
+            this.store = store;
+            this.buffer = region.asLongBuffer();
+            assert buffer.capacity() == length;
+        }
+
+        /**
+         * @return The store the table belongs to, which must be retained while the table is used in the background.
+         */
+        public ResultStore getStore() {
+            return store;
+        }
+
+        /**
+         * @return The number of elements.
+         */
+        public int length() {
+            return buffer.capacity();
+        }
+
+        /**
+         * @param index The index of the element.
+         * @return The element.
+         */
+        public long get(int index) {
+            return buffer.get(index);
+        }
+
+        /**
+         * Writes an element; may be called concurrently for different indices.
+         *
+         * @param index The index of the element.
+         * @param value The new value.
+         */
+        public void set(int index, long value) {
+            buffer.put(index, value);
+        }
+
+        /**
+         * @return A read-only view of the table; shares the memory of the table, nothing is copied.
+         */
+        public LongBuffer view() {
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * A table of ints in a {@link ResultStore}.
+     */
+    public static final class IntTable {
+        /**
+         * The store the table belongs to.
+         */
+        private final ResultStore store;
+
+        /**
+         * The elements.
+         */
+        private final IntBuffer buffer;
+
+        /**
+         * @param store  The store the table belongs to.
+         * @param region The mapped region of the table.
+         * @param length The number of elements.
+         */
+        private IntTable(ResultStore store, ByteBuffer region, int length) {
+            this.store = store;
+            this.buffer = region.asIntBuffer();
+            assert buffer.capacity() == length;
+        }
+
+        /**
+         * @return The store the table belongs to, which must be retained while the table is used in the background.
+         */
+        public ResultStore getStore() {
+            return store;
+        }
+
+        /**
+         * @return The number of elements.
+         */
+        public int length() {
+            return buffer.capacity();
+        }
+
+        /**
+         * @param index The index of the element.
+         * @return The element.
+         */
+        public int get(int index) {
+            return buffer.get(index);
+        }
+
+        /**
+         * Writes an element; may be called concurrently for different indices.
+         *
+         * @param index The index of the element.
+         * @param value The new value.
+         */
+        public void set(int index, int value) {
+            buffer.put(index, value);
+        }
+
+        /**
+         * @return A read-only view of the table; shares the memory of the table, nothing is copied.
+         */
+        public IntBuffer view() {
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    /**
+     * A table of doubles in a {@link ResultStore}.
+     */
+    public static final class DoubleTable {
+        /**
+         * The store the table belongs to.
+         */
+        private final ResultStore store;
+
+        /**
+         * The elements.
+         */
+        private final DoubleBuffer buffer;
+
+        /**
+         * @param store  The store the table belongs to.
+         * @param region The mapped region of the table.
+         * @param length The number of elements.
+         */
+        private DoubleTable(ResultStore store, ByteBuffer region, int length) {
+            this.store = store;
+            this.buffer = region.asDoubleBuffer();
+            assert buffer.capacity() == length;
+        }
+
+        /**
+         * @return The store the table belongs to, which must be retained while the table is used in the background.
+         */
+        public ResultStore getStore() {
+            return store;
+        }
+
+        /**
+         * @return The number of elements.
+         */
+        public int length() {
+            return buffer.capacity();
+        }
+
+        /**
+         * @param index The index of the element.
+         * @return The element.
+         */
+        public double get(int index) {
+            return buffer.get(index);
+        }
+
+        /**
+         * Writes an element; may be called concurrently for different indices.
+         *
+         * @param index The index of the element.
+         * @param value The new value.
+         */
+        public void set(int index, double value) {
+            buffer.put(index, value);
+        }
+
+        /**
+         * @return A read-only view of the table; shares the memory of the table, nothing is copied.
+         */
+        public DoubleBuffer view() {
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.dannypa.demoplugin;
+
+/**
+ * {@link ModularChainKernel} in plain Java; used where the Vector API is not available.
+ * <p>
+ * The chains are advanced in blocks of {@value #BLOCK} that take every step together, so the independent
+ * multiplications and divisions of a block overlap in the pipeline instead of running one after another.
+ */
+final class ScalarModularChainKernel implements ModularChainKernel {
+    /**
+     * The number of chains advanced together.
+     */
+    private static final int BLOCK = 8;
+
+    @Override
+    public void advance(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        long[] block = new long[BLOCK];
+        long[] blockMultipliers = new long[BLOCK];
+        for (int start = from; start < to; start += BLOCK) {
+            int length = Math.min(BLOCK, to - start);
+            System.arraycopy(values, start, block, 0, length);
+            System.arraycopy(multipliers, start, blockMultipliers, 0, length);
+            for (long step = 0; step < steps; step++) {
+                for (int i = 0; i < length; i++) {
+                    block[i] = block[i] * blockMultipliers[i] % modulus;
+                }
+            }
+            System.arraycopy(block, 0, values, start, length);
+        }
+    }
+
+    @Override
+    public void advanceClosedForm(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        for (int i = from; i < to; i++) {
+            values[i] = values[i] * ModularChains.powMod(multipliers[i], steps, modulus) % modulus;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,226 @@
+package com.dannypa.demoplugin;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Draws an image stretched to an arbitrary size without filtering the full-size original on every paint.
+ * <p>
+ * Keeps two levels of caching:
+ * <ul>
+ *     <li>a mipmap-style pyramid of display-compatible copies of the image, each half the size of the previous one;
+ *     a size that is seen for the first time is drawn from the smallest level that is still at least as large,</li>
+ *     <li>an LRU cache of renders at exact sizes, which is filled when the same size is drawn twice in a row
+ *     (i.e. the size has settled) and is then blitted without any scaling.</li>
+ * </ul>
+ * The pyramid takes about 4/3 of the memory of the image; the exact renders are bounded by a configurable number of
+ * bytes. Meant to be used from the EDT only.
+ */
+class ScaledImageCache {
+    /**
+     * Default memory budget of the exact-size renders.
+     */
+    static final long DEFAULT_MAX_CACHE_BYTES = 32L << 20;
+
+    /**
+     * Bytes per pixel used to estimate the memory of an image.
+     */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /**
+     * The original image.
+     */
+    private final BufferedImage source;
+
+    /**
+     * Memory budget of the exact-size renders, in bytes.
+     */
+    private final long maxCacheBytes;
+
+    /**
+     * The configuration the pyramid was built for; null if it was built without one (headless).
+     */
+    private GraphicsConfiguration pyramidConfiguration;
+
+    /**
+     * Pyramid levels; level 0 has the original size, every next one is half as large.
+     */
+    private BufferedImage[] levels;
+
+    /**
+     * Exact-size renders keyed by {@link #sizeKey(int, int)}, in access order.
+     */
+    private final LinkedHashMap<Long, BufferedImage> exactRenders = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Memory used by the exact-size renders, in bytes.
+     */
+    private long exactRendersBytes;
+
+    /**
+     * The size of the previous draw.
+     */
+    private int lastWidth = -1, lastHeight = -1;
+
+    /**
+     * @param source        The image to draw.
+     * @param maxCacheBytes Memory budget of the exact-size renders, in bytes.
+     */
+    ScaledImageCache(BufferedImage source, long maxCacheBytes) {
+        if (maxCacheBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxCacheBytes);
+        }
+        this.source = source;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * @return The original image.
+     */
+    BufferedImage getSource() {
+        return source;
+    }
+
+    /**
+     * Draws the image stretched to the given size at the origin of the graphics.
+     *
+     * @param g             The graphics to draw into.
+     * @param width         The target width.
+     * @param height        The target height.
+     * @param configuration The configuration of the target device; may be null.
+     */
+    void draw(Graphics2D g, int width, int height, GraphicsConfiguration configuration) {
+        if (width <= 0 || height <= 0) return;
+        if (levels == null || configuration != pyramidConfiguration) {
+            buildPyramid(configuration);
+        }
+
+        boolean sizeSettled = width == lastWidth && height == lastHeight;
+        lastWidth = width;
+        lastHeight = height;
+
+        BufferedImage exact = exactRenders.get(sizeKey(width, height));
+        if (exact == null && sizeSettled) {
+            exact = renderExact(width, height);
+        }
+        if (exact != null) {
+            g.drawImage(exact, 0, 0, null);
+            return;
+        }
+
+        Object oldInterpolation = g.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(getLevel(width, height), 0, 0, width, height, null);
+        if (oldInterpolation != null) {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, oldInterpolation);
+        }
+    }
+
+    /**
+     * @param width  The target width.
+     * @param height The target height.
+     * @return The smallest pyramid level that is at least as large as the target size in both dimensions.
+     */
+    private BufferedImage getLevel(int width, int height) {
+        int i = 0;
+        while (i + 1 < levels.length && levels[i + 1].getWidth() >= width && levels[i + 1].getHeight() >= height) {
+            i++;
+        }
+        return levels[i];
+    }
+
+    /**
+     * Renders the image at the exact size from the nearest pyramid level and caches the result,
+     * evicting the least recently used renders to stay within the budget.
+     *
+     * @param width  The target width.
+     * @param height The target height.
+     * @return The render, or null if it would not fit into the budget at all.
+     */
+    private BufferedImage renderExact(int width, int height) {
+        long bytes = (long) width * height * BYTES_PER_PIXEL;
+        if (bytes > maxCacheBytes) return null;
+
+        BufferedImage render = createImage(width, height);
+        Graphics2D g = render.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.drawImage(getLevel(width, height), 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        Iterator<Map.Entry<Long, BufferedImage>> eldest = exactRenders.entrySet().iterator();
+        while (exactRendersBytes + bytes > maxCacheBytes && eldest.hasNext()) {
+            BufferedImage evicted = eldest.next().getValue();
+            exactRendersBytes -= (long) evicted.getWidth() * evicted.getHeight() * BYTES_PER_PIXEL;
+            eldest.remove();
+        }
+        exactRenders.put(sizeKey(width, height), render);
+        exactRendersBytes += bytes;
+        return render;
+    }
+
+    /**
+     * Builds the pyramid for the given device and drops all exact renders made for the previous one.
+     *
+     * @param configuration The configuration of the target device; may be null.
+     */
+    private void buildPyramid(GraphicsConfiguration configuration) {
+        pyramidConfiguration = configuration;
+        exactRenders.clear();
+        exactRendersBytes = 0;
+
+        int count = 1;
+        for (int w = source.getWidth(), h = source.getHeight(); w > 1 && h > 1; w /= 2, h /= 2) {
+            count++;
+        }
+        levels = new BufferedImage[count];
+        levels[0] = copy(source, source.getWidth(), source.getHeight());
+        for (int i = 1; i < count; i++) {
+            levels[i] = copy(levels[i - 1], Math.max(1, levels[i - 1].getWidth() / 2),
+                    Math.max(1, levels[i - 1].getHeight() / 2));
+        }
+    }
+
+    /**
+     * @param image  The image to copy.
+     * @param width  The width of the copy.
+     * @param height The height of the copy.
+     * @return A display-compatible copy of the image scaled to the given size.
+     */
+    private BufferedImage copy(BufferedImage image, int width, int height) {
+        BufferedImage copy = createImage(width, height);
+        Graphics2D g = copy.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * @param width  The image width.
+     * @param height The image height.
+     * @return An empty image compatible with the pyramid device, or a plain ARGB image if there is none.
+     */
+    private BufferedImage createImage(int width, int height) {
+        return pyramidConfiguration != null
+                ? pyramidConfiguration.createCompatibleImage(width, height, source.getTransparency())
+                : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * @param width  The image width.
+     * @param height The image height.
+     * @return The key of the size in the exact render cache.
+     */
+    private static long sizeKey(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
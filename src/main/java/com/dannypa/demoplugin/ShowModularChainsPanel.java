@@ -0,0 +1,181 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Opt-in demo of {@link ModularChainComputation}: opens a frame with the progress of many modular chains whose final
+ * values are kept in a {@link ResultStore}. The store and the inputs are created in the background by the task, and
+ * the store belongs to the frame, which releases it when it is closed.
+ */
+public class ShowModularChainsPanel extends AnAction {
+    /**
+     * Name of {@link #actionPerformed} in the {@link EdtWatchdog} reports.
+     */
+    private static final String ACTION_HANDLER = "ShowModularChainsPanel.actionPerformed";
+
+    /**
+     * The number of chains.
+     */
+    private static final int CHAIN_COUNT = 1 << 20;
+
+    /**
+     * The number of steps of every chain.
+     */
+    private static final long CHAIN_STEPS = 1_000_000_000_000L;
+
+    /**
+     * The modulus of all chains.
+     */
+    private static final long CHAIN_MOD = 1_000_000_007;
+
+    /**
+     * Random chains whose final values are written to a {@link ResultStore}; the store, the inputs and the
+     * {@link ModularChainComputation} that does the work are created by {@link #prepare()}.
+     */
+    static class RandomChainsComputation implements ChunkedComputation<Long>, AutoCloseable {
+        /**
+         * The store with the final values; null until prepared.
+         */
+        private volatile ResultStore store;
+
+        /**
+         * The final values of the chains; null until prepared.
+         */
+        private volatile ResultStore.LongTable finalValues;
+
+        /**
+         * Advances the chains; null until prepared.
+         */
+        private volatile ModularChainComputation chains;
+
+        /**
+         * Whether {@link #close()} has been called; guarded by this.
+         */
+        private boolean closed;
+
+        @Override
+        public long size() {
+            return CHAIN_COUNT;
+        }
+
+        @Override
+        public void prepare() throws IOException {
+            ResultStore store = ResultStore.create();
+            synchronized (this) {
+                if (closed) {
+                    // the frame was closed while the store was being created
+                    store.close();
+                    throw new CancellationException("The chains have been closed");
+                }
+                this.store = store;
+            }
+            ResultStore.LongTable finalValues = store.newLongTable(CHAIN_COUNT);
+
+            Random random = new Random(42);
+            long[] startValues = new long[CHAIN_COUNT];
+            long[] multipliers = new long[CHAIN_COUNT];
+            for (int i = 0; i < CHAIN_COUNT; i++) {
+                startValues[i] = random.nextInt((int) CHAIN_MOD);
+                multipliers[i] = 1 + random.nextInt((int) CHAIN_MOD - 1);
+            }
+            this.finalValues = finalValues;
+            this.chains = new ModularChainComputation(startValues, multipliers, CHAIN_MOD, CHAIN_STEPS, finalValues);
+        }
+
+        @Override
+        public Long computeChunk(long from, long to) {
+            return chains.computeChunk(from, to);
+        }
+
+        @Override
+        public ResultStore getResultStore() {
+            return store;
+        }
+
+        @Override
+        public Long combine(Long left, Long right) {
+            return chains.combine(left, right);
+        }
+
+        /**
+         * @return The final values of the chains, or null if they are not there: the computation has not been
+         * prepared or has been closed. The buffer reads the mapped memory, so it must not be used after closing.
+         */
+        LongBuffer getFinalValues() {
+            ResultStore store = this.store;
+            return store != null && !store.isClosed() ? finalValues.view() : null;
+        }
+
+        /**
+         * Closes the store, or makes {@link #prepare()} close it if it is still being created.
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            if (store != null) {
+                store.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a frame with the progress of the chains.
+     *
+     * @return The opened frame.
+     */
+    private MouseFollowAndResizeFrame showModularChains() {
+        RandomChainsComputation computation = new RandomChainsComputation();
+        ParallelPreprocessingTask<Long> task = new ParallelPreprocessingTask<>(computation);
+
+        JPanel panel = new PreprocessingPanel<>(task, new ResultRenderer<Long, Long>() {
+            private int finishedChunks = 0;
+
+            @Override
+            public void renderPartial(JLabel label, List<Long> chunks) {
+                finishedChunks += chunks.size();
+                label.setText(finishedChunks + " / " + task.getChunkCount() + " chunks");
+            }
+
+            @Override
+            public void renderResult(JLabel label, Long result) {
+                LongBuffer values = computation.getFinalValues();
+                if (values == null) return;
+                label.setText(
+                        "Sum: " + result + ", first: " + values.get(0) + ", last: " + values.get(values.limit() - 1)
+                );
+            }
+        });
+
+        MouseFollowAndResizeFrame frame = MouseFollowAndResizeFramePool.getInstance().acquire(
+                new SnapshotScalingPanel(panel),
+                new Dimension(
+                        MouseFollowAndResizeFrame.SCREEN_WIDTH / 2,
+                        MouseFollowAndResizeFrame.SCREEN_HEIGHT / 2
+                )
+        );
+        frame.addResource(computation);
+        frame.open();
+        return frame;
+    }
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent event) {
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        long token = watchdog.enter(ACTION_HANDLER);
+        try {
+            showModularChains();
+        } finally {
+            watchdog.exit(token);
+        }
+    }
+}
@@ -4,77 +4,140 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import org.jetbrains.annotations.NotNull;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class ShowMouseFollowAndResizePanel extends AnAction {
-    private void showMeme() {
-        try {
-            URL memeResource = getClass().getClassLoader().getResource("meme.png");
-            if (memeResource == null) {
-                throw new IOException("No such file!");
+    /**
+     * Name of {@link #actionPerformed} in the {@link EdtWatchdog} reports.
+     */
+    private static final String ACTION_HANDLER = "ShowMouseFollowAndResizePanel.actionPerformed";
+
+    /**
+     * Opens a frame with the meme.
+     *
+     * @return The opened frame, or null if the meme is missing.
+     */
+    private MouseFollowAndResizeFrame showMeme() {
+        URL memeResource = getClass().getClassLoader().getResource("meme.png");
+        if (memeResource == null) {
+            System.out.println("Can't open the meme: No such file!");
+            return null;
+        }
+
+        // the frame opens right away with a placeholder; the image is decoded in the background
+        ImagePanel panel = new ImagePanel();
+        MouseFollowAndResizeFrame frame = MouseFollowAndResizeFramePool.getInstance().acquire(
+                panel,
+                new Dimension(
+                        MouseFollowAndResizeFrame.SCREEN_WIDTH / 2,
+                        MouseFollowAndResizeFrame.SCREEN_HEIGHT / 2
+                )
+        );
+        frame.open();
+        ImageLoader.load(memeResource, MouseFollowAndResizeFrame.SCREEN_WIDTH, MouseFollowAndResizeFrame.SCREEN_HEIGHT)
+                .whenComplete((meme, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        System.out.println("Can't open the meme: " + cause.getMessage());
+                        return;
+                    }
+                    panel.setImage(meme.getImage());
+                    frame.getPanel().setOriginalSize(meme.getOriginalSize());
+                }));
+        return frame;
+    }
+
+    /**
+     * Demo computation: 2^POWER mod MOD, split into chunks.
+     * Every chunk computes 2^(chunk length) step by step, and the partial results are multiplied.
+     */
+    static class PowerOfTwoComputation implements ChunkedComputation<Long> {
+        private final long POWER = 1_000_000_000;
+        private final long MOD = 1_000_000_007;
+
+        @Override
+        public long size() {
+            return POWER;
+        }
+
+        @Override
+        public Long computeChunk(long from, long to) {
+            long result = 1;
+            for (long i = from; i < to; i++) {
+                result = (result * 2) % MOD;
             }
-            BufferedImage meme = ImageIO.read(memeResource);
-
-            JPanel panel = new JPanel() {
-                @Override
-                protected void paintComponent(Graphics g) {
-                    super.paintComponent(g);
-                    Graphics2D g2d = (Graphics2D) g;
-                    g2d.drawImage(meme, 0, 0, getWidth(), getHeight(), this);
-                }
-            };
-            new MouseFollowAndResizeFrame(
-                    panel,
-                    new Dimension(
-                            meme.getWidth(),
-                            meme.getHeight()
-                    )
-            );
-        } catch (IOException e) {
-            System.out.println("Can't open the meme: " + e.getMessage());
+            return result;
+        }
+
+        @Override
+        public Long combine(Long left, Long right) {
+            return left * right % MOD;
+        }
+
+        @Override
+        public List<?> getCacheParameters() {
+            return List.of(POWER, MOD);
+        }
+
+        @Override
+        public CheckpointCodec<Long> getCheckpointCodec() {
+            return CheckpointCodec.LONG;
         }
     }
 
-    private void showProgressBar() {
-        JPanel panel = new PreprocessingPanel(new SwingWorker<>() {
-            private final int POWER = 1_000_000_000;
-            private final int MOD = 1_000_000_007;
+    /**
+     * Opens a frame with the progress of the demo computation.
+     *
+     * @return The opened frame.
+     */
+    private MouseFollowAndResizeFrame showProgressBar() {
+        ParallelPreprocessingTask<Long> task = new ParallelPreprocessingTask<>(new PowerOfTwoComputation());
+
+        JPanel panel = new PreprocessingPanel<>(task, new ResultRenderer<Long, Long>() {
+            private int finishedChunks = 0;
 
             @Override
-            protected Void doInBackground() {
-                System.out.println("started background");
-                int result = 1;
-                setProgress(0);
-                for (int progress = 0; progress <= POWER; progress++) {
-                    result = (result * 2) % MOD; // Never mind, java overflow is goofy like that
-                    int percent = POWER / 100;
-                    if ((progress % percent) == 0) {
-                        setProgress(progress / percent);
-                    }
-                }
-                System.out.println(result);
-                return null;
+            public void renderPartial(JLabel label, List<Long> chunks) {
+                finishedChunks += chunks.size();
+                label.setText(finishedChunks + " / " + task.getChunkCount() + " chunks");
+            }
+
+            @Override
+            public void renderResult(JLabel label, Long result) {
+                label.setText("Result: " + result);
             }
         });
 
-        new MouseFollowAndResizeFrame(
-                panel,
+        // the nested GridBagLayout is too expensive to run on every mouse move, so it is scaled as a snapshot
+        MouseFollowAndResizeFrame frame = MouseFollowAndResizeFramePool.getInstance().acquire(
+                new SnapshotScalingPanel(panel),
                 new Dimension(
                         MouseFollowAndResizeFrame.SCREEN_WIDTH / 2,
                         MouseFollowAndResizeFrame.SCREEN_HEIGHT / 2
                 )
         );
+        frame.open();
+        return frame;
     }
 
     @Override
     public void actionPerformed(@NotNull AnActionEvent event) {
-//        showMeme();
-        showProgressBar();
+        long start = System.nanoTime();
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        long token = watchdog.enter(ACTION_HANDLER);
+        try {
+//            MouseFollowAndResizeFrame frame = showMeme();
+            MouseFollowAndResizeFrame frame = showProgressBar();
+            if (frame != null) {
+                WarmUpService.getInstance().recordFirstAction(start, frame);
+            }
+        } finally {
+            watchdog.exit(token);
+        }
     }
 
     // Override getActionUpdateThread() when you target 2022.3 or later!
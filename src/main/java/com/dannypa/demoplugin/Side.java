@@ -0,0 +1,8 @@
+package com.dannypa.demoplugin;
+
+/**
+ * Enum that represents the four sides that the panel has.
+ */
+enum Side {
+    TOP, RIGHT, BOTTOM, LEFT
+}
@@ -0,0 +1,202 @@
+package com.dannypa.demoplugin;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Panel that wraps a component which is expensive to lay out (e.g. {@link PreprocessingPanel}) so that it can be
+ * resized on every mouse move by {@link MouseFollowAndResizePanel}.
+ * <p>
+ * While the size keeps changing, the wrapped component keeps its last layout and the panel draws a cached snapshot
+ * of it, scaled to the current size through a {@link Graphics2D} transform. The component is laid out at the new
+ * size only after the size has not changed for {@link #SETTLE_DELAY} ms, i.e. when the mouse stops.
+ * <p>
+ * The panel is the painting origin of its children, so every repaint request of the wrapped component
+ * (e.g. a progress update) goes through {@link #paintImmediately(int, int, int, int)}, which marks the snapshot
+ * as dirty. The snapshot is rasterized again only then.
+ */
+public class SnapshotScalingPanel extends JPanel {
+    /**
+     * System property that switches snapshot scaling on or off; on by default.
+     */
+    static final String SNAPSHOT_SCALING_PROPERTY = "demoplugin.follow.snapshot";
+
+    /**
+     * How long (in ms) the size has to stay the same before the component is laid out again.
+     */
+    static final int SETTLE_DELAY = 150;
+
+    /**
+     * The wrapped component.
+     */
+    private final Component content;
+
+    /**
+     * Fires once the size stopped changing; running while the panel is being resized.
+     */
+    private final Timer settleTimer;
+
+    /**
+     * Whether the snapshot is drawn while resizing; if not, the component is laid out on every resize.
+     */
+    private boolean snapshotScaling = Boolean.parseBoolean(System.getProperty(SNAPSHOT_SCALING_PROPERTY, "true"));
+
+    /**
+     * The cached rendering of the component at its last layout size.
+     */
+    private BufferedImage snapshot;
+
+    /**
+     * Whether the component has changed since the snapshot was taken.
+     */
+    private boolean snapshotDirty = true;
+
+    /**
+     * Creates the panel.
+     *
+     * @param content The component to be shown and scaled.
+     */
+    public SnapshotScalingPanel(Component content) {
+        super(null);
+        this.content = content;
+        this.add(content);
+        settleTimer = new Timer(SETTLE_DELAY, e -> settle());
+        settleTimer.setRepeats(false);
+    }
+
+    /**
+     * Switches between drawing a scaled snapshot and laying the component out on every resize.
+     *
+     * @param snapshotScaling Whether the snapshot should be used while resizing.
+     */
+    public void setSnapshotScaling(boolean snapshotScaling) {
+        this.snapshotScaling = snapshotScaling;
+        if (!snapshotScaling) {
+            settleTimer.stop();
+            snapshot = null;
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * @return Whether a snapshot is drawn while resizing.
+     */
+    public boolean isSnapshotScaling() {
+        return snapshotScaling;
+    }
+
+    /**
+     * @return Whether the panel is currently showing the scaled snapshot instead of the live component.
+     */
+    private boolean isScaling() {
+        return snapshotScaling && settleTimer.isRunning();
+    }
+
+    /**
+     * Called once the size stopped changing: lays the component out at the current size and shows it live again.
+     */
+    private void settle() {
+        snapshotDirty = true;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public void setBounds(int x, int y, int width, int height) {
+        boolean resized = width != getWidth() || height != getHeight();
+        super.setBounds(x, y, width, height);
+        if (resized && snapshotScaling) {
+            settleTimer.restart();
+        }
+    }
+
+    @Override
+    public void doLayout() {
+        if (isScaling()) {
+            // keep the last layout; the snapshot is scaled instead
+            return;
+        }
+        content.setBounds(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        return isPreferredSizeSet() ? super.getPreferredSize() : content.getPreferredSize();
+    }
+
+    @Override
+    protected boolean isPaintingOrigin() {
+        return true;
+    }
+
+    @Override
+    public void paintImmediately(int x, int y, int w, int h) {
+        if (!isScaling()) {
+            super.paintImmediately(x, y, w, h);
+            return;
+        }
+        // the request comes from the component (or the panel itself): the snapshot is stale,
+        // and the area to refresh is the scaled one, not the one in the component coordinates
+        snapshotDirty = true;
+        super.paintImmediately(0, 0, getWidth(), getHeight());
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        int contentWidth = content.getWidth();
+        int contentHeight = content.getHeight();
+        if (!isScaling() || contentWidth <= 0 || contentHeight <= 0) {
+            super.paint(g);
+            return;
+        }
+
+        if (snapshotDirty || snapshot == null
+                || snapshot.getWidth() != contentWidth || snapshot.getHeight() != contentHeight) {
+            renderSnapshot(contentWidth, contentHeight);
+        }
+
+        Graphics2D g2d = (Graphics2D) g.create();
+        try {
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.scale((double) getWidth() / contentWidth, (double) getHeight() / contentHeight);
+            g2d.drawImage(snapshot, 0, 0, null);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * Rasterizes the component at its current layout size into the snapshot image, reusing the image if possible.
+     *
+     * @param width  The width of the component.
+     * @param height The height of the component.
+     */
+    private void renderSnapshot(int width, int height) {
+        if (snapshot == null || snapshot.getWidth() != width || snapshot.getHeight() != height) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            snapshot = configuration != null
+                    ? configuration.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        Graphics2D g2d = snapshot.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, width, height);
+            g2d.setComposite(AlphaComposite.SrcOver);
+            content.paint(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        snapshotDirty = false;
+    }
+
+    @Override
+    public void removeNotify() {
+        settleTimer.stop();
+        snapshot = null;
+        super.removeNotify();
+    }
+}
@@ -0,0 +1,230 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.application.PathManager;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Memory-mapped file with the partial results of the finished chunks of a {@link ParallelPreprocessingTask},
+ * so that an interrupted task can resume from where it stopped instead of computing everything again.
+ * <p>
+ * Layout of the file:
+ * <ul>
+ *     <li>header: magic number (long), number of chunks (int), slot size (int);</li>
+ *     <li>one "finished" flag byte per chunk;</li>
+ *     <li>one slot of {@link CheckpointCodec#slotSize()} bytes per chunk with its partial result.</li>
+ * </ul>
+ * A slot is written before its flag, and chunks are written concurrently to different slots with absolute puts.
+ * Writes land in the page cache immediately; {@link #force()} makes them durable.
+ * <p>
+ * Cancelling a task does not stop the chunks that are already running, so a chunk may finish after the task has
+ * closed its checkpoint. Such late results are dropped: writers hold the read lock, and closing takes the write
+ * lock, so no write is in progress while the file is forced and closed.
+ *
+ * @param <R> The type of the partial result.
+ */
+final class TaskCheckpoint<R> implements AutoCloseable {
+    /**
+     * Marks a checkpoint file; changes whenever the layout changes.
+     */
+    private static final long MAGIC = 0x44454d4f434b5031L; // "DEMOCKP1"
+
+    /**
+     * Size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    /**
+     * Extension of the checkpoint files.
+     */
+    private static final String EXTENSION = ".ckpt";
+
+    /**
+     * The checkpoint file.
+     */
+    private final Path file;
+
+    /**
+     * The channel the file is mapped through.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The mapped contents of the file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The number of chunks.
+     */
+    private final int chunkCount;
+
+    /**
+     * Reads and writes the partial results.
+     */
+    private final CheckpointCodec<R> codec;
+
+    /**
+     * Shared by the writers of results, exclusive for closing.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether the checkpoint has been closed or deleted; guarded by {@link #lock}.
+     */
+    private boolean closed;
+
+    private TaskCheckpoint(Path file, FileChannel channel, MappedByteBuffer buffer, int chunkCount,
+                           CheckpointCodec<R> codec) {
+        this.file = file;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.chunkCount = chunkCount;
+        this.codec = codec;
+    }
+
+    /**
+     * @return The directory with the checkpoints under the IDE system directory.
+     */
+    static Path getDefaultDirectory() {
+        return Paths.get(PathManager.getSystemPath(), "demo-plugin", "checkpoints");
+    }
+
+    /**
+     * Opens the checkpoint of the task, or creates an empty one if there is none or it has a different layout.
+     *
+     * @param directory   The directory with the checkpoints.
+     * @param fingerprint The fingerprint of the task, see {@link TaskFingerprint}.
+     * @param chunkCount  The number of chunks of the task.
+     * @param codec       Reads and writes the partial results.
+     * @param <R>         The type of the partial result.
+     * @return The opened checkpoint.
+     * @throws IOException If the file can't be created or mapped.
+     */
+    static <R> TaskCheckpoint<R> open(Path directory, String fingerprint, int chunkCount, CheckpointCodec<R> codec)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(fingerprint + EXTENSION);
+        long size = HEADER_SIZE + (long) chunkCount * (1 + codec.slotSize());
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Checkpoint is too large: " + size + " bytes");
+        }
+
+        FileChannel channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        try {
+            boolean compatible = channel.size() == size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            compatible = compatible
+                    && buffer.getLong(0) == MAGIC
+                    && buffer.getInt(Long.BYTES) == chunkCount
+                    && buffer.getInt(Long.BYTES + Integer.BYTES) == codec.slotSize();
+            if (!compatible) {
+                // a fresh file, or one written by a different version of the task: start over
+                for (int i = 0; i < chunkCount; i++) {
+                    buffer.put(HEADER_SIZE + i, (byte) 0);
+                }
+                buffer.putInt(Long.BYTES, chunkCount);
+                buffer.putInt(Long.BYTES + Integer.BYTES, codec.slotSize());
+                buffer.putLong(0, MAGIC);
+                buffer.force();
+            }
+            return new TaskCheckpoint<>(file, channel, buffer, chunkCount, codec);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param chunk The index of the chunk.
+     * @return Whether the partial result of the chunk is in the checkpoint.
+     */
+    boolean isFinished(int chunk) {
+        return buffer.get(HEADER_SIZE + chunk) != 0;
+    }
+
+    /**
+     * @param chunk The index of a finished chunk.
+     * @return The partial result of the chunk.
+     */
+    R get(int chunk) {
+        return codec.read(buffer, slotOffset(chunk));
+    }
+
+    /**
+     * Records the partial result of a finished chunk. May be called concurrently for different chunks; does nothing
+     * once the checkpoint is closed.
+     *
+     * @param chunk  The index of the chunk.
+     * @param result The partial result of the chunk.
+     */
+    void put(int chunk, R result) {
+        lock.readLock().lock();
+        try {
+            if (closed) return;
+            codec.write(buffer, slotOffset(chunk), result);
+            buffer.put(HEADER_SIZE + chunk, (byte) 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes all recorded results to the disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * @param chunk The index of the chunk.
+     * @return The offset of the slot of the chunk in the file.
+     */
+    private int slotOffset(int chunk) {
+        return HEADER_SIZE + chunkCount + chunk * codec.slotSize();
+    }
+
+    /**
+     * Writes the recorded results to the disk and closes the file; the checkpoint can be opened again later.
+     *
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes and deletes the checkpoint, e.g. after the task has finished.
+     *
+     * @throws IOException If the file can't be deleted.
+     */
+    void delete() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            channel.close();
+            Files.deleteIfExists(file);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
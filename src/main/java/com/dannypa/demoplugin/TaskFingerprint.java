@@ -0,0 +1,44 @@
+package com.dannypa.demoplugin;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Identifies a preprocessing computation by its class and the parameters that determine its result,
+ * e.g. to find its cached result or checkpoint on disk.
+ */
+final class TaskFingerprint {
+    private TaskFingerprint() {
+    }
+
+    /**
+     * @param computationClass The class that implements the computation.
+     * @param parameters       The parameters that fully determine the result.
+     * @return A SHA-256 hex digest of the class name and the parameters; safe to be used as a file name.
+     */
+    static String of(Class<?> computationClass, List<?> parameters) {
+        StringBuilder description = new StringBuilder(computationClass.getName());
+        for (Object parameter : parameters) {
+            // the type is included so that e.g. 1 and "1" give different fingerprints
+            description.append('\0')
+                    .append(parameter == null ? "null" : parameter.getClass().getName())
+                    .append('=')
+                    .append(parameter);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(description.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
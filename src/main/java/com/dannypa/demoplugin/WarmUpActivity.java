@@ -0,0 +1,16 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Schedules the {@link WarmUpService} once a project has opened, so that the first action does not pay for loading
+ * classes, decoding images and creating the frame. The warm-up itself waits until the IDE is idle.
+ */
+public class WarmUpActivity implements StartupActivity.DumbAware {
+    @Override
+    public void runActivity(@NotNull Project project) {
+        WarmUpService.getInstance().scheduleWarmUp();
+    }
+}
@@ -0,0 +1,285 @@
+package com.dannypa.demoplugin;
+
+import com.intellij.ide.IdeEventQueue;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Application service that pays the cold-start costs of the action in the background, so the first invocation
+ * does not have to. Once the IDE has been idle for {@value #IDLE_TIMEOUT} ms after startup, a low priority thread:
+ * <ul>
+ *     <li>loads the Swing, ImageIO and plugin classes the action uses;</li>
+ *     <li>decodes {@code meme.png} into the {@link ImageLoader} cache;</li>
+ *     <li>rasterizes the glyphs of the preprocessing panel fonts;</li>
+ *     <li>runs the resize math until the JIT has compiled it;</li>
+ * </ul>
+ * and finally a {@link MouseFollowAndResizeFrame} is pre-warmed on the EDT, see
+ * {@link MouseFollowAndResizeFramePool#preWarm()}.
+ * <p>
+ * The duration of the first action of every IDE session is appended to {@value #STATS_FILE_NAME} in the IDE log
+ * directory together with the state of the warm-up, so sessions with and without it (see {@value #WARM_UP_PROPERTY})
+ * can be compared.
+ */
+public final class WarmUpService {
+    /**
+     * System property that switches the warm-up off; on by default.
+     */
+    static final String WARM_UP_PROPERTY = "demoplugin.warmup";
+
+    /**
+     * How long (in ms) the IDE must be idle before the warm-up starts.
+     */
+    private static final int IDLE_TIMEOUT = 5000;
+
+    /**
+     * Name of the file with the first action durations in the IDE log directory.
+     */
+    private static final String STATS_FILE_NAME = "demo-plugin-warmup.log";
+
+    /**
+     * The classes loaded by the warm-up, besides the ones the other steps load anyway.
+     */
+    private static final List<String> CLASSES = List.of(
+            "javax.swing.JFrame",
+            "javax.swing.JProgressBar",
+            "javax.swing.JLabel",
+            "javax.swing.SwingWorker",
+            "javax.swing.plaf.basic.BasicProgressBarUI",
+            "java.awt.GridBagLayout",
+            "java.util.concurrent.ForkJoinPool",
+            "javax.imageio.ImageIO",
+            "javax.imageio.ImageReader",
+            "com.dannypa.demoplugin.ShowMouseFollowAndResizePanel",
+            "com.dannypa.demoplugin.MouseFollowAndResizeFrame",
+            "com.dannypa.demoplugin.MouseFollowAndResizePanel",
+            "com.dannypa.demoplugin.PanelGeometry",
+            "com.dannypa.demoplugin.FramePacer",
+            "com.dannypa.demoplugin.SnapshotScalingPanel",
+            "com.dannypa.demoplugin.PreprocessingPanel",
+            "com.dannypa.demoplugin.PreprocessingManager",
+            "com.dannypa.demoplugin.ParallelPreprocessingTask",
+            "com.dannypa.demoplugin.PreprocessingResultCache",
+            "com.dannypa.demoplugin.ImagePanel",
+            "com.dannypa.demoplugin.ScaledImageCache"
+    );
+
+    /**
+     * The text rasterized with the preprocessing panel fonts.
+     */
+    private static final String GLYPHS = "0123456789 / chunks Result: Cancelled Failed %";
+
+    /**
+     * How many resize tables are compiled to get the resize math compiled by the JIT.
+     */
+    private static final int RESIZE_ITERATIONS = 200;
+
+    /**
+     * State of the warm-up.
+     */
+    enum State {
+        /**
+         * Waiting for the IDE to become idle.
+         */
+        PENDING,
+        /**
+         * Running.
+         */
+        RUNNING,
+        /**
+         * Finished.
+         */
+        DONE,
+        /**
+         * Switched off with {@value #WARM_UP_PROPERTY}.
+         */
+        DISABLED
+    }
+
+    /**
+     * The current state of the warm-up.
+     */
+    private volatile State state = Boolean.parseBoolean(System.getProperty(WARM_UP_PROPERTY, "true"))
+            ? State.PENDING : State.DISABLED;
+
+    /**
+     * How long the off-EDT part of the warm-up took, in ms; -1 until it is done.
+     */
+    private volatile long warmUpMillis = -1;
+
+    /**
+     * Whether the warm-up has been scheduled.
+     */
+    private boolean scheduled;
+
+    /**
+     * Whether the first action has been recorded; EDT only.
+     */
+    private boolean firstActionRecorded;
+
+    /**
+     * @return The application-wide service.
+     */
+    public static WarmUpService getInstance() {
+        return ApplicationManager.getApplication().getService(WarmUpService.class);
+    }
+
+    /**
+     * Starts the warm-up once the IDE has been idle for a while. Does nothing if it is disabled or already scheduled.
+     */
+    synchronized void scheduleWarmUp() {
+        if (scheduled || state != State.PENDING) return;
+        scheduled = true;
+
+        IdeEventQueue eventQueue = IdeEventQueue.getInstance();
+        Runnable onIdle = new Runnable() {
+            @Override
+            public void run() {
+                eventQueue.removeIdleListener(this);
+                Thread thread = new Thread(WarmUpService.this::warmUp, "Demo plugin warm-up");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.start();
+            }
+        };
+        eventQueue.addIdleListener(onIdle, IDLE_TIMEOUT);
+    }
+
+    /**
+     * Runs the off-EDT steps of the warm-up, then pre-warms a frame on the EDT.
+     */
+    private void warmUp() {
+        if (state != State.PENDING) return;
+        state = State.RUNNING;
+        long start = System.nanoTime();
+
+        loadClasses();
+        decodeMeme();
+        rasterizeFonts();
+        compileResizeMath();
+
+        warmUpMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        state = State.DONE;
+        ApplicationManager.getApplication().invokeLater(() -> MouseFollowAndResizeFramePool.getInstance().preWarm());
+    }
+
+    /**
+     * Loads the classes of {@link #CLASSES} without initializing them.
+     */
+    private void loadClasses() {
+        ClassLoader loader = WarmUpService.class.getClassLoader();
+        for (String name : CLASSES) {
+            try {
+                Class.forName(name, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.out.println("Can't warm up class " + name + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Decodes the meme the way {@link ShowMouseFollowAndResizePanel} does, so the action finds it in the cache.
+     */
+    private void decodeMeme() {
+        URL memeResource = WarmUpService.class.getClassLoader().getResource("meme.png");
+        if (memeResource == null) return;
+        try {
+            ImageLoader.load(
+                    memeResource, MouseFollowAndResizeFrame.SCREEN_WIDTH, MouseFollowAndResizeFrame.SCREEN_HEIGHT
+            ).join();
+        } catch (RuntimeException e) {
+            System.out.println("Can't warm up the meme: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Draws the text of the preprocessing panel with its fonts offscreen, so that the fonts are loaded and the
+     * glyphs are cached.
+     */
+    private void rasterizeFonts() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (Font font : List.of(PreprocessingPanel.PROGRESS_FONT, PreprocessingPanel.RESULT_FONT)) {
+                g.setFont(font);
+                g.getFontMetrics().stringWidth(GLYPHS);
+                g.drawString(GLYPHS, 0, 0);
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Compiles resize tables of all strategies for a range of sizes, which runs the resize math enough times for
+     * the JIT to compile it.
+     */
+    private void compileResizeMath() {
+        int maxDistance = Math.max(MouseFollowAndResizeFrame.SCREEN_WIDTH, MouseFollowAndResizeFrame.SCREEN_HEIGHT);
+        ResizeStrategy[] strategies = {
+                ResizeStrategy.named("linear", MultiTargetFollowPanel.DEFAULT_INITIAL_SCALE,
+                        MultiTargetFollowPanel.DEFAULT_SCALING_FACTOR),
+                ResizeStrategy.named("eased", MultiTargetFollowPanel.DEFAULT_INITIAL_SCALE,
+                        MultiTargetFollowPanel.DEFAULT_SCALING_FACTOR),
+                ResizeStrategy.named("stepped", MultiTargetFollowPanel.DEFAULT_INITIAL_SCALE,
+                        MultiTargetFollowPanel.DEFAULT_SCALING_FACTOR)
+        };
+        for (int i = 0; i < RESIZE_ITERATIONS; i++) {
+            ResizeStrategy strategy = strategies[i % strategies.length];
+            ResizeTable table = strategy.compile(100 + i, 200 + i, maxDistance);
+            ResizeTable.width(table.get(i));
+        }
+    }
+
+    /**
+     * @return The current state of the warm-up.
+     */
+    State getState() {
+        return state;
+    }
+
+    /**
+     * Records the duration of the first action of the session; later actions are ignored. Must be called on the EDT.
+     *
+     * @param startNanos The {@link System#nanoTime()} at which the action started.
+     * @param frame      The frame the action opened; the action is complete once its panel has been painted.
+     */
+    void recordFirstAction(long startNanos, MouseFollowAndResizeFrame frame) {
+        if (firstActionRecorded) return;
+        firstActionRecorded = true;
+
+        State stateAtStart = state;
+        frame.getPanel().runAfterNextPaint(() -> {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            String line = Instant.now() + " firstActionMs=" + millis + " warmUp=" + stateAtStart
+                    + " warmUpMs=" + warmUpMillis + "\n";
+            ApplicationManager.getApplication().executeOnPooledThread(() -> appendStats(line));
+        });
+    }
+
+    /**
+     * Appends a line to the statistics file.
+     *
+     * @param line The line to append.
+     */
+    private static void appendStats(String line) {
+        try {
+            Path file = Paths.get(PathManager.getLogPath(), STATS_FILE_NAME);
+            Files.writeString(file, line, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Can't record the first action: " + e.getMessage());
+        }
+    }
+}
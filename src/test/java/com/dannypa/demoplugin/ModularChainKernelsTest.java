@@ -0,0 +1,168 @@
+package com.dannypa.demoplugin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Checks the kernels of {@link ModularChains} against the plain loop {@code value = value * multiplier % modulus},
+ * so that the Montgomery arithmetic of the Vector API kernel is verified on the cases it handles differently from
+ * the scalar kernel: odd and even moduli, moduli just below {@link ModularChains#MAX_MODULUS}, zero steps, chain
+ * ranges that don't start at 0 or don't fill whole vector groups, and the residues 0, 1 and modulus - 1.
+ * <p>
+ * Both {@link ModularChainKernel#advance} and {@link ModularChainKernel#advanceClosedForm} of
+ * {@link ModularChains#kernel()} and {@link ModularChains#scalarKernel()} are compared with the reference, and the
+ * chains outside the advanced range must stay untouched. The test JVM runs with
+ * {@code --add-modules=jdk.incubator.vector}, so that {@link ModularChains#kernel()} is the Vector API kernel.
+ */
+public class ModularChainKernelsTest {
+    /**
+     * The moduli: even ones, which the vector kernel leaves to the scalar one, small and large odd ones, primes
+     * and the largest moduli allowed.
+     */
+    private static final long[] MODULI = {
+            2, 3, 4, 10, 65_537, 1_000_000, 999_999_937, 1_000_000_007,
+            ModularChains.MAX_MODULUS - 3, ModularChains.MAX_MODULUS - 2, ModularChains.MAX_MODULUS - 1
+    };
+
+    /**
+     * The numbers of chains; none of them but 0, 32 and 64 is a multiple of a vector group, whatever the vector
+     * length.
+     */
+    private static final int[] CHAIN_COUNTS = {0, 1, 3, 7, 8, 9, 31, 32, 33, 64, 67, 130};
+
+    /**
+     * The first advanced chain; the chains before it must stay untouched.
+     */
+    private static final int[] OFFSETS = {0, 1, 5};
+
+    /**
+     * The numbers of steps of {@link ModularChainKernel#advance}, around {@link ModularChains#CLOSED_FORM_THRESHOLD}.
+     */
+    private static final long[] STEPS = {0, 1, 2, 5, 63, 64, 257};
+
+    /**
+     * The numbers of steps of {@link ModularChainKernel#advanceClosedForm}, including ones far too many to step.
+     */
+    private static final long[] CLOSED_FORM_STEPS = {0, 1, 2, 63, 64, 1_000_000_007, Long.MAX_VALUE};
+
+    /**
+     * Compares both methods of the kernels with the reference on all cases.
+     *
+     * @param kernels The kernels to check.
+     * @return A description of every mismatch; empty if there is none.
+     */
+    private static List<String> check(ModularChainKernel... kernels) {
+        List<String> mismatches = new ArrayList<>();
+        Random random = new Random(42);
+        for (long modulus : MODULI) {
+            for (int chainCount : CHAIN_COUNTS) {
+                for (int offset : OFFSETS) {
+                    int size = offset + chainCount + 2;
+                    long[] values = new long[size];
+                    long[] multipliers = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = Math.floorMod(random.nextLong(), modulus);
+                        multipliers[i] = Math.floorMod(random.nextLong(), modulus);
+                    }
+                    // the extreme residues as pairs of value and multiplier
+                    long[][] edges = {{0, modulus - 1}, {1, 1}, {modulus - 1, 0}, {modulus - 1, modulus - 1}};
+                    for (int i = 0; i < edges.length && i < chainCount; i++) {
+                        values[offset + i] = edges[i][0];
+                        multipliers[offset + i] = edges[i][1];
+                    }
+
+                    for (ModularChainKernel kernel : kernels) {
+                        for (long steps : STEPS) {
+                            long[] expected = step(values, multipliers, offset, offset + chainCount, modulus, steps);
+                            long[] actual = values.clone();
+                            kernel.advance(actual, multipliers, offset, offset + chainCount, modulus, steps);
+                            compare(mismatches, kernel.getName() + ".advance", modulus, chainCount, offset, steps,
+                                    expected, actual);
+                        }
+                        for (long steps : CLOSED_FORM_STEPS) {
+                            long[] expected = power(values, multipliers, offset, offset + chainCount, modulus, steps);
+                            long[] actual = values.clone();
+                            kernel.advanceClosedForm(actual, multipliers, offset, offset + chainCount, modulus, steps);
+                            compare(mismatches, kernel.getName() + ".advanceClosedForm", modulus, chainCount, offset,
+                                    steps, expected, actual);
+                        }
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * @return The chains advanced one step at a time by the plain loop.
+     */
+    private static long[] step(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        long[] result = values.clone();
+        for (int i = from; i < to; i++) {
+            for (long step = 0; step < steps; step++) {
+                result[i] = result[i] * multipliers[i] % modulus;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The chains advanced with {@link ModularChains#powMod}.
+     */
+    private static long[] power(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        long[] result = values.clone();
+        for (int i = from; i < to; i++) {
+            result[i] = result[i] * ModularChains.powMod(multipliers[i], steps, modulus) % modulus;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a mismatch for the first chain that differs, if any.
+     */
+    private static void compare(List<String> mismatches, String method, long modulus, int chainCount, int offset,
+                                long steps, long[] expected, long[] actual) {
+        if (Arrays.equals(expected, actual)) return;
+        int chain = Arrays.mismatch(expected, actual);
+        mismatches.add(method + " modulus=" + modulus + " chains=" + chainCount + " offset=" + offset
+                + " steps=" + steps + ": chain " + chain + " is " + actual[chain] + ", expected " + expected[chain]);
+    }
+
+    /**
+     * The Vector API kernel must be loaded, otherwise {@link #vectorKernelMatchesPlainLoop()} would only check the
+     * scalar kernel again.
+     */
+    @Test
+    public void vectorKernelIsLoaded() {
+        assertNotSame(
+                "The Vector API kernel is not loaded; the test JVM needs --add-modules=jdk.incubator.vector",
+                ModularChains.scalarKernel(),
+                ModularChains.kernel()
+        );
+    }
+
+    /**
+     * The scalar kernel must compute the same values as the plain loop.
+     */
+    @Test
+    public void scalarKernelMatchesPlainLoop() {
+        List<String> mismatches = check(ModularChains.scalarKernel());
+        assertEquals(String.join("\n", mismatches), 0, mismatches.size());
+    }
+
+    /**
+     * The Vector API kernel must compute the same values as the plain loop, and so as the scalar kernel.
+     */
+    @Test
+    public void vectorKernelMatchesPlainLoop() {
+        List<String> mismatches = check(ModularChains.kernel());
+        assertEquals(String.join("\n", mismatches), 0, mismatches.size());
+    }
+}
@@ -0,0 +1,176 @@
+package com.dannypa.demoplugin;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link ModularChainKernel} on the incubator Vector API: every lane of a vector is a chain.
+ * <p>
+ * The Vector API has no fast lane-wise division, so products are reduced with Montgomery multiplication by
+ * R = 2^32, which needs only multiplications, masks and shifts of longs: the multipliers are brought into the
+ * Montgomery form m * R mod n once, after which {@code montgomery(v, m * R) = v * m mod n} keeps the values in
+ * their normal form. Montgomery reduction needs an odd modulus; chains with an even one are left to the scalar
+ * kernel.
+ * <p>
+ * Only loaded through {@link ModularChains#kernel()}, since the class can't be linked unless the JVM runs with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+final class VectorModularChainKernel implements ModularChainKernel {
+    /**
+     * The widest vector shape the CPU supports.
+     */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * The number of vectors {@link #advance} steps together.
+     */
+    private static final int GROUP = 4;
+
+    /**
+     * The low 32 bits of a long, i.e. the remainder modulo R.
+     */
+    private static final long LOW_BITS = 0xffffffffL;
+
+    /**
+     * The scalar kernel for even moduli and the chains that do not fill a whole vector.
+     */
+    private final ModularChainKernel scalar = new ScalarModularChainKernel();
+
+    /**
+     * @throws UnsupportedOperationException If the CPU has no vectors of at least two longs.
+     */
+    VectorModularChainKernel() {
+        if (SPECIES.length() < 2) {
+            throw new UnsupportedOperationException("No vectors of longs on this CPU: " + SPECIES);
+        }
+    }
+
+    @Override
+    public void advance(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        if ((modulus & 1) == 0) {
+            scalar.advance(values, multipliers, from, to, modulus, steps);
+            return;
+        }
+        int lanes = SPECIES.length();
+        long inverse = negativeInverse(modulus);
+        long[] montgomery = new long[GROUP * lanes];
+        int groupEnd = from + (to - from) / (GROUP * lanes) * (GROUP * lanes);
+        for (int i = from; i < groupEnd; i += GROUP * lanes) {
+            toMontgomery(multipliers, i, montgomery, GROUP * lanes, modulus);
+            // four vectors step together, so that their reductions overlap in the pipeline
+            LongVector value0 = LongVector.fromArray(SPECIES, values, i);
+            LongVector value1 = LongVector.fromArray(SPECIES, values, i + lanes);
+            LongVector value2 = LongVector.fromArray(SPECIES, values, i + 2 * lanes);
+            LongVector value3 = LongVector.fromArray(SPECIES, values, i + 3 * lanes);
+            LongVector multiplier0 = LongVector.fromArray(SPECIES, montgomery, 0);
+            LongVector multiplier1 = LongVector.fromArray(SPECIES, montgomery, lanes);
+            LongVector multiplier2 = LongVector.fromArray(SPECIES, montgomery, 2 * lanes);
+            LongVector multiplier3 = LongVector.fromArray(SPECIES, montgomery, 3 * lanes);
+            for (long step = 0; step < steps; step++) {
+                value0 = multiply(value0, multiplier0, modulus, inverse);
+                value1 = multiply(value1, multiplier1, modulus, inverse);
+                value2 = multiply(value2, multiplier2, modulus, inverse);
+                value3 = multiply(value3, multiplier3, modulus, inverse);
+            }
+            value0.intoArray(values, i);
+            value1.intoArray(values, i + lanes);
+            value2.intoArray(values, i + 2 * lanes);
+            value3.intoArray(values, i + 3 * lanes);
+        }
+
+        int vectorEnd = groupEnd + SPECIES.loopBound(to - groupEnd);
+        for (int i = groupEnd; i < vectorEnd; i += lanes) {
+            toMontgomery(multipliers, i, montgomery, lanes, modulus);
+            LongVector value = LongVector.fromArray(SPECIES, values, i);
+            LongVector multiplier = LongVector.fromArray(SPECIES, montgomery, 0);
+            for (long step = 0; step < steps; step++) {
+                value = multiply(value, multiplier, modulus, inverse);
+            }
+            value.intoArray(values, i);
+        }
+        scalar.advance(values, multipliers, vectorEnd, to, modulus, steps);
+    }
+
+    @Override
+    public void advanceClosedForm(long[] values, long[] multipliers, int from, int to, long modulus, long steps) {
+        if ((modulus & 1) == 0) {
+            scalar.advanceClosedForm(values, multipliers, from, to, modulus, steps);
+            return;
+        }
+        int lanes = SPECIES.length();
+        long inverse = negativeInverse(modulus);
+        long[] montgomery = new long[lanes];
+        int vectorEnd = from + SPECIES.loopBound(to - from);
+        for (int i = from; i < vectorEnd; i += lanes) {
+            toMontgomery(multipliers, i, montgomery, lanes, modulus);
+            LongVector result = LongVector.fromArray(SPECIES, values, i);
+            // in the Montgomery form, which squaring keeps
+            LongVector power = LongVector.fromArray(SPECIES, montgomery, 0);
+            // all chains share the exponent, so all lanes take the same branches
+            for (long exponent = steps; exponent > 0; exponent >>>= 1) {
+                if ((exponent & 1) != 0) {
+                    result = multiply(result, power, modulus, inverse);
+                }
+                if (exponent > 1) {
+                    power = multiply(power, power, modulus, inverse);
+                }
+            }
+            result.intoArray(values, i);
+        }
+        scalar.advanceClosedForm(values, multipliers, vectorEnd, to, modulus, steps);
+    }
+
+    /**
+     * Montgomery multiplication: {@code a * b / R mod modulus} lane-wise.
+     *
+     * @param a       Residues.
+     * @param b       Residues.
+     * @param modulus The odd modulus, below 2^31.
+     * @param inverse {@code -1 / modulus mod R}, see {@link #negativeInverse(long)}.
+     * @return The reduced product.
+     */
+    private static LongVector multiply(LongVector a, LongVector b, long modulus, long inverse) {
+        // below modulus^2 < 2^62
+        LongVector product = a.mul(b);
+        LongVector factor = product.and(LOW_BITS).mul(inverse).and(LOW_BITS);
+        // product + factor * modulus is divisible by R and below 2^64, so the unsigned shift is exact
+        LongVector reduced = product.add(factor.mul(modulus)).lanewise(VectorOperators.LSHR, 32);
+        // in [0, 2 * modulus); the sign bit selects the correction, without branches or masks
+        reduced = reduced.sub(modulus);
+        return reduced.add(reduced.lanewise(VectorOperators.ASHR, 63).and(modulus));
+    }
+
+    /**
+     * @param modulus The odd modulus.
+     * @return {@code -1 / modulus mod R}.
+     */
+    private static long negativeInverse(long modulus) {
+        // Newton's iteration doubles the number of correct low bits, starting from 3 (modulus * modulus = 1 mod 8)
+        long inverse = modulus;
+        for (int i = 0; i < 4; i++) {
+            inverse *= 2 - modulus * inverse;
+        }
+        return -inverse & LOW_BITS;
+    }
+
+    /**
+     * Converts residues into the Montgomery form.
+     *
+     * @param residues The residues.
+     * @param from     The first residue to convert.
+     * @param target   Receives the residues multiplied by R modulo the modulus, from index 0.
+     * @param length   The number of residues to convert.
+     * @param modulus  The modulus.
+     */
+    private static void toMontgomery(long[] residues, int from, long[] target, int length, long modulus) {
+        for (int i = 0; i < length; i++) {
+            target[i] = (residues[from + i] << 32) % modulus;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector" + SPECIES.vectorBitSize();
+    }
+}